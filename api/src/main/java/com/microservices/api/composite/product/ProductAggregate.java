@@ -1,5 +1,6 @@
 package com.microservices.api.composite.product;
 
+import java.util.Collections;
 import java.util.List;
 
 public class ProductAggregate {
@@ -9,7 +10,9 @@ public class ProductAggregate {
     private final int weight;
     private final List<RecommendationSummary> recommendations;
     private final List<ReviewSummary> reviews;
+    private final RatingSummary ratings;
     private final ServiceAddresses serviceAddresses;
+    private final List<String> missingSections;
 
     public int getProductId() {
         return productId;
@@ -31,17 +34,39 @@ public class ProductAggregate {
         return reviews;
     }
 
+    public RatingSummary getRatings() {
+        return ratings;
+    }
+
     public ServiceAddresses getServiceAddresses() {
         return serviceAddresses;
     }
 
+    /**
+     * Names of the sections, "recommendations", "reviews" and/or "ratings", that were not available in time and are null
+     * in this response. Empty for a complete response.
+     */
+    public List<String> getMissingSections() {
+        return missingSections;
+    }
+
     public ProductAggregate(int productId, String name, int weight, List<RecommendationSummary> recommendations, List<ReviewSummary> reviews, ServiceAddresses serviceAddresses) {
+        this(productId, name, weight, recommendations, reviews, null, serviceAddresses, Collections.emptyList());
+    }
+
+    public ProductAggregate(int productId, String name, int weight, List<RecommendationSummary> recommendations, List<ReviewSummary> reviews, ServiceAddresses serviceAddresses, List<String> missingSections) {
+        this(productId, name, weight, recommendations, reviews, null, serviceAddresses, missingSections);
+    }
+
+    public ProductAggregate(int productId, String name, int weight, List<RecommendationSummary> recommendations, List<ReviewSummary> reviews, RatingSummary ratings, ServiceAddresses serviceAddresses, List<String> missingSections) {
         this.productId = productId;
         this.name = name;
         this.weight = weight;
         this.recommendations = recommendations;
         this.reviews = reviews;
+        this.ratings = ratings;
         this.serviceAddresses = serviceAddresses;
+        this.missingSections = missingSections;
     }
 
     public ProductAggregate() {
@@ -50,6 +75,8 @@ public class ProductAggregate {
         weight = 0;
         recommendations = null;
         reviews = null;
+        ratings = null;
         serviceAddresses = null;
+        missingSections = null;
     }
 }
@@ -5,6 +5,10 @@ import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
 
 @Tag(
         name = "ProductComposite",
@@ -25,7 +29,24 @@ public interface ProductCompositeService {
                             "${api.responseCodes.unprocessableEntity.description}")})
     @GetMapping(value = "/product-composite/{productId}",
                 produces = "application/json")
-    ProductAggregate getProduct(@PathVariable(value = "productId") int productId);
+    Mono<ProductAggregate> getProduct(@PathVariable(value = "productId") int productId,
+                                      @RequestParam(value = "include", required = false) List<String> include,
+                                      @RequestParam(value = "fields", required = false) List<String> fields,
+                                      @RequestHeader(value = "X-Latency-Budget", required = false) Long latencyBudgetMillis);
+
+    @Operation(summary = "${api.product-composite.get-composite-products.description}",
+                description = "${api.product-composite.get-composite-products.notes}")
+    @ApiResponses(value = {
+                    @ApiResponse(responseCode = "200", description =
+                            "${api.responseCodes.ok.description}"),
+                    @ApiResponse(responseCode = "400", description =
+                            "${api.responseCodes.badRequest.description}"),
+                    @ApiResponse(responseCode = "422", description =
+                            "${api.responseCodes.unprocessableEntity.description}")})
+    @GetMapping(value = "/product-composite",
+                params = "productIds",
+                produces = "application/json")
+    Flux<ProductAggregate> getProducts(@RequestParam(value = "productIds") List<Integer> productIds);
 
     @Operation(summary = "${api.product-composite.create-composite-product.description}",
         description = "${api.product-composite.create-composite-product.notes}")
@@ -35,7 +56,20 @@ public interface ProductCompositeService {
             @ApiResponse(responseCode = "422", description =
                     "${api.responseCodes.unprocessableEntity.description}")})
     @PostMapping(value = "/product-composite", consumes = "application/json")
-    void createProduct(@RequestBody ProductAggregate body);
+    Mono<Void> createProduct(@RequestBody ProductAggregate body,
+                             @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey);
+
+    @Operation(summary = "${api.product-composite.import-composite-products.description}",
+        description = "${api.product-composite.import-composite-products.notes}")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description =
+                    "${api.responseCodes.ok.description}"),
+            @ApiResponse(responseCode = "400", description =
+                    "${api.responseCodes.badRequest.description}")})
+    @PostMapping(value = "/product-composite/import",
+                consumes = "application/x-ndjson",
+                produces = "application/x-ndjson")
+    Flux<ProductImportResult> importProducts(@RequestBody Flux<ProductAggregate> body);
 
     @Operation(summary = "${api.product-composite.delete-composite-product.description}",
             description = "${api.product-composite.delete-composite-product.notes}")
@@ -45,5 +79,5 @@ public interface ProductCompositeService {
             @ApiResponse(responseCode = "422", description =
                     "${api.responseCodes.unprocessableEntity.description}")})
     @DeleteMapping(value = "/product-composite/{productId}")
-    void deleteProduct(@PathVariable(name = "productId") int productId);
+    Mono<Void> deleteProduct(@PathVariable(name = "productId") int productId);
 }
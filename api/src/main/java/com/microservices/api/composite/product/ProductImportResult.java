@@ -0,0 +1,39 @@
+package com.microservices.api.composite.product;
+
+public class ProductImportResult {
+    private final int productId;
+    private final boolean imported;
+    private final String message;
+
+    public ProductImportResult(int productId, boolean imported, String message) {
+        this.productId = productId;
+        this.imported = imported;
+        this.message = message;
+    }
+
+    public ProductImportResult() {
+        this.productId = 0;
+        this.imported = false;
+        this.message = null;
+    }
+
+    public static ProductImportResult imported(int productId) {
+        return new ProductImportResult(productId, true, null);
+    }
+
+    public static ProductImportResult failed(int productId, String message) {
+        return new ProductImportResult(productId, false, message);
+    }
+
+    public int getProductId() {
+        return productId;
+    }
+
+    public boolean isImported() {
+        return imported;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+}
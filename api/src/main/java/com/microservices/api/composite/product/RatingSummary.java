@@ -0,0 +1,33 @@
+package com.microservices.api.composite.product;
+
+import java.util.Map;
+
+public class RatingSummary {
+    private final long count;
+    private final double average;
+    private final Map<Integer, Long> histogram;
+
+    public RatingSummary(long count, double average, Map<Integer, Long> histogram) {
+        this.count = count;
+        this.average = average;
+        this.histogram = histogram;
+    }
+
+    public RatingSummary() {
+        count = 0;
+        average = 0;
+        histogram = null;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getAverage() {
+        return average;
+    }
+
+    public Map<Integer, Long> getHistogram() {
+        return histogram;
+    }
+}
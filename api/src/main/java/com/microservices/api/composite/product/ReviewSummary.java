@@ -1,5 +1,8 @@
 package com.microservices.api.composite.product;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
 public class ReviewSummary {
     private final int reviewId;
 
@@ -1,6 +1,10 @@
 package com.microservices.api.core.product;
 
 import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
 
 public interface ProductService {
 
@@ -8,15 +12,30 @@ public interface ProductService {
             value = "/product/{productId}",
             produces = "application/json"
     )
-    Product getProduct(@PathVariable int productId);
+    Mono<Product> getProduct(@PathVariable int productId);
+
+    @GetMapping(
+            value = "/product",
+            params = "productIds",
+            produces = "application/json"
+    )
+    Flux<Product> getProducts(@RequestParam(value = "productIds") List<Integer> productIds);
 
     @PostMapping(
             value = "/product",
             consumes = "application/json",
             produces = "application/json"
     )
-    Product createProduct(@RequestBody Product body);
+    Mono<Product> createProduct(@RequestBody Product body,
+                                @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey);
+
+    @PostMapping(
+            value = "/product/batch",
+            consumes = "application/json",
+            produces = "application/json"
+    )
+    Flux<Product> createProducts(@RequestBody List<Product> body);
 
     @DeleteMapping(value = "/product/{productId}")
-    void deleteProduct(@PathVariable int productId);
+    Mono<Void> deleteProduct(@PathVariable int productId);
 }
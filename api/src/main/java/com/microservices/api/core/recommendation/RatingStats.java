@@ -0,0 +1,65 @@
+package com.microservices.api.core.recommendation;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Rating statistics of the recommendations of a product, kept up to date by the recommendation service as
+ * recommendations are created and deleted. The histogram holds the number of recommendations per rate.
+ */
+public class RatingStats {
+    private int productId;
+    private long count;
+    private long sum;
+    private Map<Integer, Long> histogram;
+
+    public RatingStats(int productId, long count, long sum, Map<Integer, Long> histogram) {
+        this.productId = productId;
+        this.count = count;
+        this.sum = sum;
+        this.histogram = histogram;
+    }
+
+    public RatingStats() {
+        this.productId = 0;
+        this.count = 0;
+        this.sum = 0;
+        this.histogram = null;
+    }
+
+    public static RatingStats empty(int productId) {
+        return new RatingStats(productId, 0, 0, Collections.emptyMap());
+    }
+
+    public int getProductId() {
+        return productId;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getSum() {
+        return sum;
+    }
+
+    public Map<Integer, Long> getHistogram() {
+        return histogram;
+    }
+
+    public void setProductId(int productId) {
+        this.productId = productId;
+    }
+
+    public void setCount(long count) {
+        this.count = count;
+    }
+
+    public void setSum(long sum) {
+        this.sum = sum;
+    }
+
+    public void setHistogram(Map<Integer, Long> histogram) {
+        this.histogram = histogram;
+    }
+}
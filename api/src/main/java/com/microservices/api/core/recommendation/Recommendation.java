@@ -1,7 +1,9 @@
 package com.microservices.api.core.recommendation;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.microservices.api.composite.product.RecommendationSummary;
 
+@JsonInclude(JsonInclude.Include.NON_NULL)
 public class Recommendation {
     private int productId;
     private int recommendationId;
@@ -1,6 +1,8 @@
 package com.microservices.api.core.recommendation;
 
 import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 import java.util.List;
 
@@ -9,15 +11,53 @@ public interface RecommendationService {
     @GetMapping(
             value = "/recommendation",
             produces = "application/json")
-    List<Recommendation> getRecommendations(
+    Flux<Recommendation> getRecommendations(
+            @RequestParam(value = "productId") int productId,
+            @RequestParam(value = "fields", required = false) List<String> fields,
+            @RequestParam(value = "limit", required = false) Integer limit,
+            @RequestParam(value = "after", required = false) Integer afterRecommendationId);
+
+    @GetMapping(
+            value = "/recommendation",
+            params = "productIds",
+            produces = "application/json")
+    Flux<Recommendation> getRecommendationsForProducts(
+            @RequestParam(value = "productIds") List<Integer> productIds,
+            @RequestParam(value = "limit", required = false) Integer limit);
+
+    @GetMapping(
+            value = "/recommendation/stream",
+            produces = "application/x-ndjson")
+    Flux<Recommendation> streamRecommendations(
             @RequestParam(value = "productId") int productId);
 
+    @GetMapping(
+            value = "/recommendation/rating-stats",
+            produces = "application/json")
+    Mono<RatingStats> getRatingStats(
+            @RequestParam(value = "productId") int productId);
+
+    @GetMapping(
+            value = "/recommendation/rating-stats",
+            params = "productIds",
+            produces = "application/json")
+    Flux<RatingStats> getRatingStatsForProducts(
+            @RequestParam(value = "productIds") List<Integer> productIds);
+
     @PostMapping(
             value = "/recommendation",
             consumes = "application/json",
             produces = "application/json")
-    Recommendation createRecommendation(@RequestBody Recommendation body);
+    Mono<Recommendation> createRecommendation(
+            @RequestBody Recommendation body,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey);
+
+    @PostMapping(
+            value = "/recommendation/batch",
+            consumes = "application/json",
+            produces = "application/json")
+    Flux<Recommendation> createRecommendations(@RequestBody List<Recommendation> body);
 
     @DeleteMapping(value = "/recommendation")
-    void deleteRecommendation(@RequestParam(name = "productId") int productId);
+    Mono<Void> deleteRecommendation(@RequestParam(name = "productId") int productId);
 }
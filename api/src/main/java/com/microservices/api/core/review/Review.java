@@ -1,7 +1,9 @@
 package com.microservices.api.core.review;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.microservices.api.composite.product.ReviewSummary;
 
+@JsonInclude(JsonInclude.Include.NON_NULL)
 public class Review {
     private int productId;
     private int reviewId;
@@ -1,6 +1,8 @@
 package com.microservices.api.core.review;
 
 import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 import java.util.List;
 
@@ -9,11 +11,30 @@ public interface ReviewService {
     @GetMapping(
             value = "/review",
             produces = "application/json")
-    List<Review> getReviews(@RequestParam(value = "productId", required = true) int productId);
+    Flux<Review> getReviews(@RequestParam(value = "productId", required = true) int productId,
+                            @RequestParam(value = "fields", required = false) List<String> fields,
+                            @RequestParam(value = "limit", required = false) Integer limit,
+                            @RequestParam(value = "after", required = false) Integer afterReviewId);
+
+    @GetMapping(
+            value = "/review",
+            params = "productIds",
+            produces = "application/json")
+    Flux<Review> getReviewsForProducts(@RequestParam(value = "productIds") List<Integer> productIds,
+                                       @RequestParam(value = "limit", required = false) Integer limit);
+
+    @GetMapping(
+            value = "/review/stream",
+            produces = "application/x-ndjson")
+    Flux<Review> streamReviews(@RequestParam(value = "productId") int productId);
 
     @PostMapping(value = "/review", consumes = "application/json", produces = "application/json")
-    Review createReview(@RequestBody Review body);
+    Mono<Review> createReview(@RequestBody Review body,
+                              @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey);
+
+    @PostMapping(value = "/review/batch", consumes = "application/json", produces = "application/json")
+    Flux<Review> createReviews(@RequestBody List<Review> body);
 
     @DeleteMapping(value = "/review")
-    void deleteReview(@RequestParam(name = "productId") int productId);
+    Mono<Void> deleteReview(@RequestParam(name = "productId") int productId);
 }
@@ -1,7 +1,11 @@
 package com.microservices.api.exception;
 
+/**
+ * Thrown for a request that is well-formed but can not be processed, answered with a 422. Like
+ * {@link NotFoundException} it is created without a stack trace, as the message says all there is to know.
+ */
 public class InvalidInputException extends RuntimeException{
     public InvalidInputException(String message) {
-        super(message);
+        super(message, null, false, false);
     }
 }
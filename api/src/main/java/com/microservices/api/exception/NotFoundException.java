@@ -1,18 +1,24 @@
 package com.microservices.api.exception;
 
+/**
+ * Thrown for an entity that does not exist. It is an expected outcome of a request rather than a failure, so the
+ * exception is created without a stack trace and without suppressed exceptions, to keep a 404 response cheap.
+ */
 public class NotFoundException extends RuntimeException{
 
-    public NotFoundException() {};
+    public NotFoundException() {
+        this(null, null);
+    }
 
     public NotFoundException(String message) {
-        super(message);
+        this(message, null);
     }
 
     public NotFoundException(String message, Throwable cause) {
-        super(message, cause);
+        super(message, cause, false, false);
     }
 
     public NotFoundException(Throwable cause) {
-        super(cause);
+        this(cause == null ? null : cause.toString(), cause);
     }
 }
@@ -0,0 +1,17 @@
+package com.microservices.api.exception;
+
+/**
+ * Thrown for a call that is failed fast without calling the backend, because its circuit breaker is open or its
+ * bulkhead is full. These are thrown at the highest rate exactly when a backend is in trouble, so the exception is
+ * created without a stack trace and without suppressed exceptions.
+ */
+public class ServiceUnavailableException extends RuntimeException {
+
+    public ServiceUnavailableException(String message) {
+        this(message, null);
+    }
+
+    public ServiceUnavailableException(String message, Throwable cause) {
+        super(message, cause, false, false);
+    }
+}
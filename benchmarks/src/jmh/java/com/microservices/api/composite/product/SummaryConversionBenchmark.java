@@ -0,0 +1,53 @@
+package com.microservices.api.composite.product;
+
+import com.microservices.api.core.recommendation.Recommendation;
+import com.microservices.api.core.review.Review;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Measures the conversion of the summaries of a composite product back to core DTOs, as done when
+ * a composite product is created or imported.
+ */
+@State(Scope.Benchmark)
+public class SummaryConversionBenchmark {
+
+    private static final int PRODUCT_ID = 1;
+
+    @Param({"1", "100", "10000"})
+    private int size;
+
+    private List<ReviewSummary> reviewSummaries;
+    private List<RecommendationSummary> recommendationSummaries;
+
+    @Setup
+    public void setUp() {
+        reviewSummaries = new ArrayList<>(size);
+        recommendationSummaries = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            reviewSummaries.add(new ReviewSummary(i, "author-" + i, "subject-" + i, "content-" + i));
+            recommendationSummaries.add(new RecommendationSummary(i, "author-" + i, i % 6, "content-" + i));
+        }
+    }
+
+    @Benchmark
+    public List<Review> reviewSummaryToReview() {
+        return reviewSummaries.stream()
+                .map(summary -> Review.reviewSummaryToReview(PRODUCT_ID, summary))
+                .collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public List<Recommendation> recommendationFromRecommendationSummary() {
+        return recommendationSummaries.stream()
+                .map(summary -> Recommendation.recommendationFromRecommendationSummary(PRODUCT_ID, summary))
+                .collect(Collectors.toList());
+    }
+}
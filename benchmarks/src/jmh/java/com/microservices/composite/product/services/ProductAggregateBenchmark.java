@@ -0,0 +1,64 @@
+package com.microservices.composite.product.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.microservices.api.composite.product.ProductAggregate;
+import com.microservices.api.core.product.Product;
+import com.microservices.api.core.recommendation.RatingStats;
+import com.microservices.api.core.recommendation.Recommendation;
+import com.microservices.api.core.review.Review;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Measures how a composite product is assembled from the responses of the core services,
+ * and how it is serialized to JSON, for a product with {@code size} recommendations and reviews.
+ */
+@State(Scope.Benchmark)
+public class ProductAggregateBenchmark {
+
+    private static final int PRODUCT_ID = 1;
+
+    @Param({"1", "100", "10000"})
+    private int size;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private Product product;
+    private List<Recommendation> recommendations;
+    private List<Review> reviews;
+    private RatingStats ratingStats;
+    private ProductAggregate aggregate;
+
+    @Setup
+    public void setUp() {
+        product = new Product(PRODUCT_ID, "name", 10, "product-service:8080");
+        recommendations = new ArrayList<>(size);
+        reviews = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            recommendations.add(new Recommendation(PRODUCT_ID, i, "author-" + i, i % 6, "content-" + i, "recommendation-service:8080"));
+            reviews.add(new Review(PRODUCT_ID, i, "author-" + i, "subject-" + i, "content-" + i, "review-service:8080"));
+        }
+        ratingStats = new RatingStats(PRODUCT_ID, size, 3L * size, Map.of(3, (long) size));
+        aggregate = createProductAggregate();
+    }
+
+    @Benchmark
+    public ProductAggregate createProductAggregate() {
+        return ProductAggregateAssembler.assemble(product, recommendations, reviews, ratingStats,
+                "product-composite-service:8080", Collections.emptyList());
+    }
+
+    @Benchmark
+    public byte[] serializeProductAggregate() throws JsonProcessingException {
+        return mapper.writeValueAsBytes(aggregate);
+    }
+}
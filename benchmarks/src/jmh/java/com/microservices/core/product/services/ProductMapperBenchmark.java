@@ -0,0 +1,52 @@
+package com.microservices.core.product.services;
+
+import com.microservices.api.core.product.Product;
+import com.microservices.core.product.persistence.ProductEntity;
+import org.mapstruct.factory.Mappers;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Measures the MapStruct mapping of {@code size} products between entities and API DTOs. The mapper has no
+ * list method from entities, so that direction maps the products one by one, as the product service does.
+ */
+@State(Scope.Benchmark)
+public class ProductMapperBenchmark {
+
+    @Param({"1", "100", "10000"})
+    private int size;
+
+    private final ProductMapper mapper = Mappers.getMapper(ProductMapper.class);
+
+    private List<Product> apiList;
+    private List<ProductEntity> entityList;
+
+    @Setup
+    public void setUp() {
+        apiList = new ArrayList<>(size);
+        entityList = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            apiList.add(new Product(i, "name-" + i, i % 100, "product-service:8080"));
+            entityList.add(new ProductEntity(i, "name-" + i, i % 100));
+        }
+    }
+
+    @Benchmark
+    public List<Product> entityListToApiList() {
+        return entityList.stream()
+                .map(mapper::entityToApi)
+                .collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public List<ProductEntity> apiListToEntityList() {
+        return mapper.apiListToEntityList(apiList);
+    }
+}
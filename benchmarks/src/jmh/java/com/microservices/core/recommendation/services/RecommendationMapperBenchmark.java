@@ -0,0 +1,49 @@
+package com.microservices.core.recommendation.services;
+
+import com.microservices.api.core.recommendation.Recommendation;
+import com.microservices.core.recommendation.persistence.RecommendationEntity;
+import org.mapstruct.factory.Mappers;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Measures the MapStruct list mappings of {@code size} recommendations between entities and API DTOs,
+ * the mapping to entities being the one done for a bulk create.
+ */
+@State(Scope.Benchmark)
+public class RecommendationMapperBenchmark {
+
+    @Param({"1", "100", "10000"})
+    private int size;
+
+    private final RecommendationMapper mapper = Mappers.getMapper(RecommendationMapper.class);
+
+    private List<Recommendation> apiList;
+    private List<RecommendationEntity> entityList;
+
+    @Setup
+    public void setUp() {
+        apiList = new ArrayList<>(size);
+        entityList = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            apiList.add(new Recommendation(1, i, "author-" + i, i % 6, "content-" + i, "recommendation-service:8080"));
+            entityList.add(new RecommendationEntity("id-" + i, 0, 1, i, "author-" + i, i % 6, "content-" + i, null));
+        }
+    }
+
+    @Benchmark
+    public List<Recommendation> entityListToApiList() {
+        return mapper.entityListToApiList(entityList);
+    }
+
+    @Benchmark
+    public List<RecommendationEntity> apiListToEntityList() {
+        return mapper.apiListToEntityList(apiList);
+    }
+}
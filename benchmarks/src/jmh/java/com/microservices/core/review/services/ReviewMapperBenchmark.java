@@ -0,0 +1,49 @@
+package com.microservices.core.review.services;
+
+import com.microservices.api.core.review.Review;
+import com.microservices.core.review.persistence.ReviewEntity;
+import org.mapstruct.factory.Mappers;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Measures the MapStruct mapping of a list of {@code size} reviews between entities and API DTOs,
+ * as done for a page of reviews and for a bulk create.
+ */
+@State(Scope.Benchmark)
+public class ReviewMapperBenchmark {
+
+    @Param({"1", "100", "10000"})
+    private int size;
+
+    private final ReviewMapper mapper = Mappers.getMapper(ReviewMapper.class);
+
+    private List<Review> apiList;
+    private List<ReviewEntity> entityList;
+
+    @Setup
+    public void setUp() {
+        apiList = new ArrayList<>(size);
+        entityList = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            apiList.add(new Review(1, i, "author-" + i, "subject-" + i, "content-" + i, "review-service:8080"));
+            entityList.add(new ReviewEntity(i, 0, 1, i, "author-" + i, "subject-" + i, "content-" + i, null));
+        }
+    }
+
+    @Benchmark
+    public List<Review> entityListToApiList() {
+        return mapper.entityListToApiList(entityList);
+    }
+
+    @Benchmark
+    public List<ReviewEntity> apiListToEntityList() {
+        return mapper.apiListToEntityList(apiList);
+    }
+}
@@ -0,0 +1,34 @@
+package com.microservices.loadtest;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Log-normal distribution of response times, given by its median and its 99th percentile, as a simple model of
+ * the long tail of the latencies of a real service. A 99th percentile equal to the median gives a fixed latency.
+ */
+public class LatencyDistribution {
+
+    private static final double Z_99 = 2.3263;
+
+    private final double medianNanos;
+    private final double sigma;
+
+    public LatencyDistribution(Duration median, Duration p99) {
+        if (median.isNegative() || p99.compareTo(median) < 0) {
+            throw new IllegalArgumentException("Invalid latency, expected 0 <= median <= p99, got median " + median + " and p99 " + p99);
+        }
+        this.medianNanos = median.toNanos();
+        this.sigma = median.isZero() ? 0 : Math.log((double) p99.toNanos() / median.toNanos()) / Z_99;
+    }
+
+    public Duration sample() {
+        double gaussian = ThreadLocalRandom.current().nextGaussian();
+        return Duration.ofNanos((long) (medianNanos * Math.exp(sigma * gaussian)));
+    }
+
+    @Override
+    public String toString() {
+        return String.format("median %.1f ms, p99 %.1f ms", medianNanos / 1e6, medianNanos * Math.exp(sigma * Z_99) / 1e6);
+    }
+}
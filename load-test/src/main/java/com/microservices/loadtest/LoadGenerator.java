@@ -0,0 +1,193 @@
+package com.microservices.loadtest;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Sends {@code GET /product-composite/{productId}} requests at a fixed arrival rate, for random product ids.
+ * The requests are sent on schedule whether or not the earlier ones have completed (an open workload), and the
+ * latency of a request is measured from the time it was scheduled to be sent, so a stall of the service or the
+ * client shows up in the latencies instead of lowering the load ("coordinated omission").
+ * <p>
+ * Requests scheduled during the warm-up are sent but not measured. The throughput and latencies of every report
+ * interval are logged while the test runs.
+ */
+public class LoadGenerator {
+
+    private static final Logger LOG = LoggerFactory.getLogger(LoadGenerator.class);
+
+    private static final int SIGNIFICANT_DIGITS = 3;
+
+    private final WebClient client;
+    private final int rate;
+    private final int products;
+
+    private final Recorder intervalRecorder = new Recorder(SIGNIFICANT_DIGITS);
+    private final Recorder measuredRecorder = new Recorder(SIGNIFICANT_DIGITS);
+    private final AtomicLong outstanding = new AtomicLong();
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder intervalFailures = new LongAdder();
+    private final ConcurrentMap<String, LongAdder> failures = new ConcurrentHashMap<>();
+
+    public LoadGenerator(WebClient client, int rate, int products) {
+        if (rate < 1 || products < 1) {
+            throw new IllegalArgumentException("Invalid load, expected a rate and a number of products of at least 1, got " + rate + " and " + products);
+        }
+        this.client = client;
+        this.rate = rate;
+        this.products = products;
+    }
+
+    public Result run(Duration warmup, Duration duration, Duration reportInterval, Duration drainTimeout) {
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / rate;
+        long start = System.nanoTime();
+        long measureStart = start + warmup.toNanos();
+        long end = measureStart + duration.toNanos();
+
+        ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor();
+        reporter.scheduleAtFixedRate(() -> reportInterval(reportInterval),
+                reportInterval.toNanos(), reportInterval.toNanos(), TimeUnit.NANOSECONDS);
+        LOG.info("Sends {} requests/s for a warm-up of {} s and a measurement of {} s", rate, warmup.toSeconds(), duration.toSeconds());
+
+        try {
+            for (long i = 0; ; i++) {
+                long scheduled = start + i * intervalNanos;
+                if (scheduled >= end) {
+                    break;
+                }
+                long wait;
+                while ((wait = scheduled - System.nanoTime()) > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+                send(scheduled, scheduled >= measureStart);
+            }
+
+            long drainEnd = System.nanoTime() + drainTimeout.toNanos();
+            while (outstanding.get() > 0 && System.nanoTime() < drainEnd) {
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(10));
+            }
+            if (outstanding.get() > 0) {
+                LOG.warn("{} requests still outstanding after {} s, they are not measured", outstanding.get(), drainTimeout.toSeconds());
+            }
+        } finally {
+            reporter.shutdownNow();
+        }
+
+        Map<String, Long> failureCounts = new TreeMap<>();
+        failures.forEach((reason, count) -> failureCounts.put(reason, count.sum()));
+        return new Result(rate, duration, sent.sum(), measuredRecorder.getIntervalHistogram(), failureCounts);
+    }
+
+    private void send(long scheduled, boolean measured) {
+        int productId = ThreadLocalRandom.current().nextInt(products) + 1;
+        outstanding.incrementAndGet();
+        if (measured) {
+            sent.increment();
+        }
+        client.get().uri("/product-composite/{productId}", productId)
+                .exchangeToMono(response -> response.releaseBody().thenReturn(response.rawStatusCode()))
+                .subscribe(
+                        status -> {
+                            if (status >= 200 && status < 300) {
+                                completed(scheduled, measured);
+                            } else {
+                                failed("HTTP " + status, measured);
+                            }
+                        },
+                        ex -> {
+                            outstanding.decrementAndGet();
+                            failed(ex.getClass().getSimpleName(), measured);
+                        },
+                        () -> outstanding.decrementAndGet());
+    }
+
+    private void completed(long scheduled, boolean measured) {
+        long latencyMicros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - scheduled);
+        intervalRecorder.recordValue(latencyMicros);
+        if (measured) {
+            measuredRecorder.recordValue(latencyMicros);
+        }
+    }
+
+    private void failed(String reason, boolean measured) {
+        intervalFailures.increment();
+        if (measured) {
+            failures.computeIfAbsent(reason, r -> new LongAdder()).increment();
+        }
+    }
+
+    private void reportInterval(Duration reportInterval) {
+        Histogram histogram = intervalRecorder.getIntervalHistogram();
+        double seconds = reportInterval.toNanos() / 1e9;
+        LOG.info("{} requests/s, {} failed/s, latency ms p50 {}, p99 {}, max {}, outstanding {}",
+                String.format("%.0f", histogram.getTotalCount() / seconds),
+                String.format("%.0f", intervalFailures.sumThenReset() / seconds),
+                millis(histogram.getValueAtPercentile(50)),
+                millis(histogram.getValueAtPercentile(99)),
+                millis(histogram.getMaxValue()),
+                outstanding.get());
+    }
+
+    private static String millis(long micros) {
+        return String.format("%.2f", micros / 1000.0);
+    }
+
+    /**
+     * Outcome of the measured part of a load test, latencies are recorded in microseconds.
+     */
+    public static class Result {
+        private final int rate;
+        private final Duration duration;
+        private final long sent;
+        private final Histogram latencies;
+        private final Map<String, Long> failures;
+
+        Result(int rate, Duration duration, long sent, Histogram latencies, Map<String, Long> failures) {
+            this.rate = rate;
+            this.duration = duration;
+            this.sent = sent;
+            this.latencies = latencies;
+            this.failures = failures;
+        }
+
+        public int getRate() {
+            return rate;
+        }
+
+        public long getSent() {
+            return sent;
+        }
+
+        public long getCompleted() {
+            return latencies.getTotalCount();
+        }
+
+        public double getThroughput() {
+            return latencies.getTotalCount() / (duration.toNanos() / 1e9);
+        }
+
+        public Histogram getLatencies() {
+            return latencies;
+        }
+
+        public Map<String, Long> getFailures() {
+            return failures;
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package com.microservices.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.microservices.composite.product.ProductCompositeServiceApplication;
+import org.HdrHistogram.Histogram;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.convert.ApplicationConversionService;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.env.SimpleCommandLinePropertySource;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.io.FileNotFoundException;
+import java.io.PrintStream;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Load test of product-composite-service on a single machine: the composite service is started in-process,
+ * against stub core services with configurable latencies and error rates, and is driven at a fixed arrival rate.
+ * <p>
+ * The options of the load test are given as {@code --load-test.*} arguments, see the defaults below. All other
+ * arguments are passed on to the composite service, for example {@code --app.product-composite.hedging.enabled=false},
+ * to compare the integration strategies. The cache of composite products is turned off, so every request reaches
+ * the core services, unless {@code --load-test.cache=true} is given. Run it with:
+ * <pre>
+ * ./gradlew :load-test:run --args="--load-test.rate=500 --load-test.review.latency-p99=200ms"
+ * </pre>
+ */
+public class LoadTestApplication {
+
+    private static final String OPTION_PREFIX = "--load-test.";
+
+    private static final String[] CORE_SERVICES = {"product", "recommendation", "review"};
+
+    public static void main(String[] args) throws FileNotFoundException {
+        StandardEnvironment options = new StandardEnvironment();
+        options.setConversionService(new ApplicationConversionService());
+        options.getPropertySources().addFirst(new SimpleCommandLinePropertySource(args));
+
+        int rate = options.getProperty("load-test.rate", Integer.class, 200);
+        Duration warmup = options.getProperty("load-test.warmup", Duration.class, Duration.ofSeconds(10));
+        Duration duration = options.getProperty("load-test.duration", Duration.class, Duration.ofSeconds(30));
+        Duration reportInterval = options.getProperty("load-test.report-interval", Duration.class, Duration.ofSeconds(1));
+        Duration drainTimeout = options.getProperty("load-test.drain-timeout", Duration.class, Duration.ofSeconds(10));
+        int products = options.getProperty("load-test.products", Integer.class, 1000);
+        int connections = options.getProperty("load-test.connections", Integer.class, 1000);
+        int recommendations = options.getProperty("load-test.recommendations", Integer.class, 10);
+        int reviews = options.getProperty("load-test.reviews", Integer.class, 10);
+        boolean cache = options.getProperty("load-test.cache", Boolean.class, false);
+        String histogramOutput = options.getProperty("load-test.histogram-output");
+
+        ObjectMapper mapper = new ObjectMapper().findAndRegisterModules();
+        Map<String, StubCoreService> stubs = new HashMap<>();
+        ConfigurableApplicationContext composite = null;
+        ConnectionProvider connectionProvider = null;
+        try {
+            Map<String, Object> compositeProperties = new HashMap<>();
+            compositeProperties.put("server.port", 0);
+            compositeProperties.put("logging.level.com.microservices", "info");
+            if (!cache) {
+                compositeProperties.put("app.product-composite.cache.maximum-size", 0);
+            }
+            for (String service : CORE_SERVICES) {
+                LatencyDistribution latency = new LatencyDistribution(
+                        options.getProperty("load-test." + service + ".latency", Duration.class, Duration.ofMillis(5)),
+                        options.getProperty("load-test." + service + ".latency-p99", Duration.class, Duration.ofMillis(20)));
+                double errorRate = options.getProperty("load-test." + service + ".error-rate", Double.class, 0.0);
+                StubCoreService stub = new StubCoreService(service, latency, errorRate, recommendations, reviews, mapper).start();
+                stubs.put(service, stub);
+                compositeProperties.put("app." + service + "-service.instances", stub.address());
+            }
+
+            composite = new SpringApplicationBuilder(ProductCompositeServiceApplication.class)
+                    .run(compositeArgs(args, compositeProperties));
+            int port = composite.getEnvironment().getRequiredProperty("local.server.port", Integer.class);
+
+            connectionProvider = ConnectionProvider.builder("load-test")
+                    .maxConnections(connections)
+                    .pendingAcquireMaxCount(-1)
+                    .pendingAcquireTimeout(Duration.ofMinutes(1))
+                    .build();
+            WebClient client = WebClient.builder()
+                    .baseUrl("http://localhost:" + port)
+                    .clientConnector(new ReactorClientHttpConnector(HttpClient.create(connectionProvider)))
+                    .build();
+
+            LoadGenerator.Result result = new LoadGenerator(client, rate, products)
+                    .run(warmup, duration, reportInterval, drainTimeout);
+
+            report(result, cacheSetting(composite), System.out);
+            if (histogramOutput != null) {
+                try (PrintStream out = new PrintStream(histogramOutput)) {
+                    result.getLatencies().outputPercentileDistribution(out, 1000.0);
+                }
+            }
+        } finally {
+            if (connectionProvider != null) {
+                connectionProvider.dispose();
+            }
+            if (composite != null) {
+                composite.close();
+            }
+            stubs.values().forEach(StubCoreService::stop);
+        }
+    }
+
+    /**
+     * The arguments of the composite service: the given properties, unless overridden, followed by all
+     * arguments that are not options of the load test. Arguments take precedence over application.yml.
+     */
+    private static String[] compositeArgs(String[] args, Map<String, Object> properties) {
+        List<String> compositeArgs = new ArrayList<>();
+        properties.forEach((key, value) -> {
+            if (Arrays.stream(args).noneMatch(arg -> arg.startsWith("--" + key + "="))) {
+                compositeArgs.add("--" + key + "=" + value);
+            }
+        });
+        Arrays.stream(args)
+                .filter(arg -> !arg.startsWith(OPTION_PREFIX))
+                .forEach(compositeArgs::add);
+        return compositeArgs.toArray(String[]::new);
+    }
+
+    private static String cacheSetting(ConfigurableApplicationContext composite) {
+        long maximumSize = composite.getEnvironment().getRequiredProperty("app.product-composite.cache.maximum-size", Long.class);
+        if (maximumSize == 0) {
+            return "off";
+        }
+        return "maximum-size " + maximumSize + ", time-to-live " +
+                composite.getEnvironment().getRequiredProperty("app.product-composite.cache.time-to-live");
+    }
+
+    private static void report(LoadGenerator.Result result, String cacheSetting, PrintStream out) {
+        Histogram latencies = result.getLatencies();
+        out.println();
+        out.println("Composite cache: " + cacheSetting);
+        out.printf("Throughput: %.1f requests/s completed, target %d requests/s%n", result.getThroughput(), result.getRate());
+        out.printf("Requests: %d sent, %d completed, %d failed%n", result.getSent(), result.getCompleted(),
+                result.getFailures().values().stream().mapToLong(Long::longValue).sum());
+        if (!result.getFailures().isEmpty()) {
+            List<String> failures = result.getFailures().entrySet().stream()
+                    .map(entry -> entry.getKey() + ": " + entry.getValue())
+                    .collect(Collectors.toList());
+            out.println("Failures: " + String.join(", ", failures));
+        }
+        out.printf("Latency (ms): p50 %.2f, p90 %.2f, p99 %.2f, p99.9 %.2f, max %.2f%n",
+                latencies.getValueAtPercentile(50) / 1000.0,
+                latencies.getValueAtPercentile(90) / 1000.0,
+                latencies.getValueAtPercentile(99) / 1000.0,
+                latencies.getValueAtPercentile(99.9) / 1000.0,
+                latencies.getMaxValue() / 1000.0);
+        out.println();
+        latencies.outputPercentileDistribution(out, 5, 1000.0);
+    }
+}
@@ -0,0 +1,148 @@
+package com.microservices.loadtest;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.microservices.api.core.product.Product;
+import com.microservices.api.core.recommendation.RatingStats;
+import com.microservices.api.core.recommendation.Recommendation;
+import com.microservices.api.core.review.Review;
+import com.microservices.util.HttpErrorInfo;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.QueryStringDecoder;
+import org.reactivestreams.Publisher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+import reactor.netty.http.server.HttpServerRequest;
+import reactor.netty.http.server.HttpServerResponse;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+
+/**
+ * In-process stand-in for a core service, serving the reads of a composite product from generated data.
+ * Every response is delayed by a sample of the latency distribution, and the given share of the requests
+ * fails with a 500 Internal Server Error. The health endpoint always answers right away.
+ */
+public class StubCoreService {
+
+    private static final Logger LOG = LoggerFactory.getLogger(StubCoreService.class);
+
+    private final String name;
+    private final LatencyDistribution latency;
+    private final double errorRate;
+    private final int recommendationsPerProduct;
+    private final int reviewsPerProduct;
+    private final ObjectMapper mapper;
+
+    private DisposableServer server;
+
+    public StubCoreService(String name, LatencyDistribution latency, double errorRate,
+                           int recommendationsPerProduct, int reviewsPerProduct, ObjectMapper mapper) {
+        if (errorRate < 0 || errorRate > 1) {
+            throw new IllegalArgumentException("Invalid error rate for " + name + ": " + errorRate + ", expected 0 to 1");
+        }
+        this.name = name;
+        this.latency = latency;
+        this.errorRate = errorRate;
+        this.recommendationsPerProduct = recommendationsPerProduct;
+        this.reviewsPerProduct = reviewsPerProduct;
+        this.mapper = mapper;
+    }
+
+    public StubCoreService start() {
+        server = HttpServer.create()
+                .host("localhost")
+                .port(0)
+                .route(routes -> routes
+                        .get("/actuator/health", (request, response) -> response
+                                .header(HttpHeaderNames.CONTENT_TYPE, "application/json")
+                                .sendString(Mono.just("{\"status\":\"UP\"}")))
+                        .get("/product/{productId}", (request, response) ->
+                                respond(request, response, query -> product(Integer.parseInt(request.param("productId")))))
+                        .get("/recommendation", (request, response) ->
+                                respond(request, response, query -> recommendations(productId(query), limit(query, recommendationsPerProduct))))
+                        .get("/recommendation/rating-stats", (request, response) ->
+                                respond(request, response, query -> ratingStats(productId(query))))
+                        .get("/review", (request, response) ->
+                                respond(request, response, query -> reviews(productId(query), limit(query, reviewsPerProduct)))))
+                .bindNow();
+        LOG.info("Stub {} service listens on port {}, latency {}, error rate {}", name, server.port(), latency, errorRate);
+        return this;
+    }
+
+    public String address() {
+        return "localhost:" + server.port();
+    }
+
+    public void stop() {
+        if (server != null) {
+            server.disposeNow();
+        }
+    }
+
+    private Publisher<Void> respond(HttpServerRequest request, HttpServerResponse response,
+                                    Function<Map<String, List<String>>, Object> body) {
+        Map<String, List<String>> query = new QueryStringDecoder(request.uri()).parameters();
+        return Mono.delay(latency.sample())
+                .then(Mono.defer(() -> {
+                    if (errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate) {
+                        HttpErrorInfo error = new HttpErrorInfo(request.fullPath(), HttpStatus.INTERNAL_SERVER_ERROR, "Injected failure of the stub " + name + " service");
+                        return send(response.status(HttpResponseStatus.INTERNAL_SERVER_ERROR), error);
+                    }
+                    return send(response, body.apply(query));
+                }));
+    }
+
+    private Mono<Void> send(HttpServerResponse response, Object body) {
+        try {
+            byte[] json = mapper.writeValueAsBytes(body);
+            return response
+                    .header(HttpHeaderNames.CONTENT_TYPE, "application/json")
+                    .sendByteArray(Mono.just(json))
+                    .then();
+        } catch (JsonProcessingException ex) {
+            return Mono.error(ex);
+        }
+    }
+
+    private Product product(int productId) {
+        return new Product(productId, "name-" + productId, productId % 100, address());
+    }
+
+    private List<Recommendation> recommendations(int productId, int count) {
+        List<Recommendation> recommendations = new ArrayList<>(count);
+        for (int i = 1; i <= count; i++) {
+            recommendations.add(new Recommendation(productId, i, "author-" + i, i % 6, "content-" + i, address()));
+        }
+        return recommendations;
+    }
+
+    private RatingStats ratingStats(int productId) {
+        return new RatingStats(productId, recommendationsPerProduct, 3L * recommendationsPerProduct, Map.of(3, (long) recommendationsPerProduct));
+    }
+
+    private List<Review> reviews(int productId, int count) {
+        List<Review> reviews = new ArrayList<>(count);
+        for (int i = 1; i <= count; i++) {
+            reviews.add(new Review(productId, i, "author-" + i, "subject-" + i, "content-" + i, address()));
+        }
+        return reviews;
+    }
+
+    private static int productId(Map<String, List<String>> query) {
+        return Integer.parseInt(query.get("productId").get(0));
+    }
+
+    private static int limit(Map<String, List<String>> query, int count) {
+        List<String> limit = query.get("limit");
+        return limit == null ? count : Math.min(count, Integer.parseInt(limit.get(0)));
+    }
+}
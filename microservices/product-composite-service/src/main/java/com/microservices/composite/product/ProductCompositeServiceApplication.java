@@ -10,7 +10,6 @@ import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.ComponentScan;
-import org.springframework.web.client.RestTemplate;
 
 @SpringBootApplication
 @ComponentScan("com.microservices")
@@ -28,11 +27,6 @@ public class ProductCompositeServiceApplication {
 	@Value("${api.common.contact.url}") String apiContactUrl;
 	@Value("${api.common.contact.email}") String apiContactEmail;
 
-	@Bean
-	RestTemplate restTemplate() {
-		return new RestTemplate();
-	}
-
 	/**
 	 * Will exposed on $HOST:$PORT/swagger-ui.html
 	 *
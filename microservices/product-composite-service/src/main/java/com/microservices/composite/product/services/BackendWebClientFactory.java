@@ -0,0 +1,118 @@
+package com.microservices.composite.product.services;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.netty.channel.ChannelOption;
+import io.netty.handler.timeout.ReadTimeoutHandler;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Creates one {@link WebClient} per core service, each with its own pool of keep-alive connections, so a slow
+ * or dead backend can only exhaust its own pool. Idle and old connections are evicted in the background, and
+ * connect, read and response timeouts make sure a request never hangs on a dead backend.
+ * The pool gauges are published as reactor.netty.connection.provider.*, tagged with the pool name, and the
+ * time it takes to get a connection from a pool is recorded in the http.client.connection.acquire timer.
+ * Requests are balanced over the instances of the core service, see {@link ServiceInstanceBalancer}, and the
+ * number of healthy instances is published in the http.client.instances.healthy gauge.
+ */
+@Component
+public class BackendWebClientFactory implements DisposableBean {
+
+    private final WebClient.Builder webClientBuilder;
+    private final MeterRegistry registry;
+
+    private final Duration connectTimeout;
+    private final Duration readTimeout;
+    private final Duration pendingAcquireTimeout;
+    private final Duration maxIdleTime;
+    private final Duration maxLifeTime;
+    private final Duration evictInterval;
+    private final Duration healthCheckInterval;
+    private final Duration healthCheckTimeout;
+
+    private final List<ConnectionProvider> connectionProviders = new CopyOnWriteArrayList<>();
+    private final List<ServiceInstanceBalancer> balancers = new CopyOnWriteArrayList<>();
+
+    @Autowired
+    public BackendWebClientFactory(WebClient.Builder webClientBuilder, MeterRegistry registry,
+                                   @Value("${app.http-client.connect-timeout}") Duration connectTimeout,
+                                   @Value("${app.http-client.read-timeout}") Duration readTimeout,
+                                   @Value("${app.http-client.pending-acquire-timeout}") Duration pendingAcquireTimeout,
+                                   @Value("${app.http-client.max-idle-time}") Duration maxIdleTime,
+                                   @Value("${app.http-client.max-life-time}") Duration maxLifeTime,
+                                   @Value("${app.http-client.evict-interval}") Duration evictInterval,
+                                   @Value("${app.load-balancer.health-check-interval}") Duration healthCheckInterval,
+                                   @Value("${app.load-balancer.health-check-timeout}") Duration healthCheckTimeout) {
+        this.webClientBuilder = webClientBuilder;
+        this.registry = registry;
+        this.connectTimeout = connectTimeout;
+        this.readTimeout = readTimeout;
+        this.pendingAcquireTimeout = pendingAcquireTimeout;
+        this.maxIdleTime = maxIdleTime;
+        this.maxLifeTime = maxLifeTime;
+        this.evictInterval = evictInterval;
+        this.healthCheckInterval = healthCheckInterval;
+        this.healthCheckTimeout = healthCheckTimeout;
+    }
+
+    public WebClient create(String name, List<String> instances, int maxConnections, Duration responseTimeout) {
+        ConnectionProvider connectionProvider = ConnectionProvider.builder(name)
+                .maxConnections(maxConnections)
+                .pendingAcquireTimeout(pendingAcquireTimeout)
+                .maxIdleTime(maxIdleTime)
+                .maxLifeTime(maxLifeTime)
+                .evictInBackground(evictInterval)
+                .metrics(true)
+                .build();
+        connectionProviders.add(connectionProvider);
+
+        Timer acquireTimer = Timer.builder("http.client.connection.acquire")
+                .description("Time to get a connection from the pool, including connecting when the pool grows")
+                .tag("pool", name)
+                .register(registry);
+
+        HttpClient httpClient = HttpClient.create(connectionProvider)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) connectTimeout.toMillis())
+                .option(ChannelOption.SO_KEEPALIVE, true)
+                .responseTimeout(responseTimeout)
+                .doOnRequest((request, connection) ->
+                        connection.addHandlerLast(new ReadTimeoutHandler(readTimeout.toMillis(), TimeUnit.MILLISECONDS)))
+                .mapConnect(connection -> connection
+                        .elapsed()
+                        .doOnNext(timedConnection -> acquireTimer.record(timedConnection.getT1(), TimeUnit.MILLISECONDS))
+                        .map(timedConnection -> timedConnection.getT2()));
+
+        ReactorClientHttpConnector connector = new ReactorClientHttpConnector(httpClient);
+
+        ServiceInstanceBalancer balancer = new ServiceInstanceBalancer(name, instances,
+                webClientBuilder.clone().clientConnector(connector).build(), healthCheckInterval, healthCheckTimeout);
+        balancers.add(balancer);
+        Gauge.builder("http.client.instances.healthy", balancer, ServiceInstanceBalancer::healthyInstances)
+                .tag("pool", name)
+                .register(registry);
+
+        return webClientBuilder.clone()
+                .clientConnector(connector)
+                .filter(balancer)
+                .build();
+    }
+
+    @Override
+    public void destroy() {
+        balancers.forEach(ServiceInstanceBalancer::dispose);
+        connectionProviders.forEach(ConnectionProvider::dispose);
+    }
+}
@@ -0,0 +1,75 @@
+package com.microservices.composite.product.services;
+
+import com.microservices.api.composite.product.ProductAggregate;
+import com.microservices.api.composite.product.RatingSummary;
+import com.microservices.api.composite.product.RecommendationSummary;
+import com.microservices.api.composite.product.ReviewSummary;
+import com.microservices.api.composite.product.ServiceAddresses;
+import com.microservices.api.core.product.Product;
+import com.microservices.api.core.recommendation.RatingStats;
+import com.microservices.api.core.recommendation.Recommendation;
+import com.microservices.api.core.review.Review;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Assembles a composite product from the responses of the core services. It has no state and no dependencies,
+ * so the assembly can be measured on its own, see the benchmarks project.
+ */
+final class ProductAggregateAssembler {
+
+    private ProductAggregateAssembler() {
+    }
+
+    /**
+     * A null list of recommendations or reviews, or null rating statistics, leaves the section out of the
+     * composite product, {@code missingSections} tells the client which of them could not be fetched.
+     */
+    static ProductAggregate assemble(Product product,
+                                     List<Recommendation> recommendations,
+                                     List<Review> reviews,
+                                     RatingStats ratingStats,
+                                     String serviceAddress,
+                                     List<String> missingSections) {
+        //1.product information
+        int productId = product.getProductId();
+        String name = product.getName();
+        int weight = product.getWeight();
+
+        //2.recommendationSummary if any
+        List<RecommendationSummary> recommendationSummaries =
+                (recommendations == null) ? null : recommendations.stream()
+                        .map(r -> new RecommendationSummary(r.getRecommendationId(), r.getAuthor(), r.getRate(), r.getContent()))
+                        .collect(Collectors.toList());
+
+        //3.reviewSummary list if any
+        List<ReviewSummary> reviewSummaries =
+                (reviews == null) ? null : reviews.stream()
+                        .map(r -> new ReviewSummary(r.getReviewId(), r.getAuthor(), r.getSubject(), r.getContent()))
+                        .collect(Collectors.toList());
+
+        //4. ratingSummary if any
+        RatingSummary ratingSummary = (ratingStats == null) ? null : new RatingSummary(
+                ratingStats.getCount(),
+                ratingStats.getCount() == 0 ? 0 : (double) ratingStats.getSum() / ratingStats.getCount(),
+                ratingStats.getHistogram());
+
+        //5. Create ServiceAddresses, info regarding the involved microservices addresses
+        String productAddress = product.getServiceAddress();
+        String reviewAddress = (reviews != null && reviews.size() > 0) ? reviews.get(0).getServiceAddress() : "";
+        String recommendationAddress = (recommendations != null && recommendations.size() > 0) ? recommendations.get(0).getServiceAddress() : "";
+        ServiceAddresses serviceAddresses = new ServiceAddresses(serviceAddress, productAddress, reviewAddress, recommendationAddress);
+
+        return new ProductAggregate(
+                productId,
+                name,
+                weight,
+                recommendationSummaries,
+                reviewSummaries,
+                ratingSummary,
+                serviceAddresses,
+                missingSections
+        );
+    }
+}
@@ -0,0 +1,89 @@
+package com.microservices.composite.product.services;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.microservices.api.composite.product.ProductAggregate;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+/**
+ * Bounded, time limited in-memory cache of composite products.
+ * Entries are evicted on size and TTL, and invalidated when the composite service creates or deletes a product.
+ * Partial composite products, with sections missing, are never cached. A maximum size of 0 turns the cache off.
+ * Hit, miss and eviction counts are published as {@code cache.*} metrics with the tag {@code cache=productAggregate}.
+ */
+@Component
+public class ProductAggregateCache {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ProductAggregateCache.class);
+
+    private final Cache<Integer, ProductAggregate> cache;
+
+    private final boolean enabled;
+
+    /**
+     * The latest load in flight per productId. An invalidation removes the load of its productId, and a load
+     * only populates the cache if it is still registered when it completes, since a load that started before
+     * an invalidation may have read the data that was just changed. Invalidations of other products do not
+     * affect the load. Holds only the productIds with a load in flight.
+     */
+    private final ConcurrentMap<Integer, Object> loads = new ConcurrentHashMap<>();
+
+    @Autowired
+    public ProductAggregateCache(MeterRegistry meterRegistry,
+                                 @Value("${app.product-composite.cache.maximum-size}") long maximumSize,
+                                 @Value("${app.product-composite.cache.time-to-live}") Duration timeToLive) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(timeToLive)
+                .recordStats()
+                .build();
+        this.enabled = maximumSize > 0;
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "productAggregate");
+    }
+
+    public Mono<ProductAggregate> get(int productId, Supplier<Mono<ProductAggregate>> loader) {
+        if (!enabled) {
+            return Mono.defer(loader);
+        }
+        return Mono.defer(() -> {
+            ProductAggregate cached = cache.getIfPresent(productId);
+            if (cached != null) {
+                LOG.debug("Found a cached composite product with id: {}", productId);
+                return Mono.just(cached);
+            }
+
+            Object load = new Object();
+            loads.put(productId, load);
+            return loader.get()
+                    .doOnNext(aggregate -> loads.computeIfPresent(productId, (id, latestLoad) -> {
+                        if (latestLoad == load && isComplete(aggregate)) {
+                            cache.put(productId, aggregate);
+                        }
+                        return latestLoad;
+                    }))
+                    .doFinally(signal -> loads.remove(productId, load));
+        });
+    }
+
+    private boolean isComplete(ProductAggregate aggregate) {
+        return aggregate.getMissingSections() == null || aggregate.getMissingSections().isEmpty();
+    }
+
+    public void invalidate(int productId) {
+        loads.remove(productId);
+        cache.invalidate(productId);
+        LOG.debug("Invalidated the cached composite product with id: {}", productId);
+    }
+}
@@ -1,191 +1,512 @@
 package com.microservices.composite.product.services;
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.microservices.api.core.product.Product;
 import com.microservices.api.core.product.ProductService;
+import com.microservices.api.core.recommendation.RatingStats;
 import com.microservices.api.core.recommendation.Recommendation;
 import com.microservices.api.core.recommendation.RecommendationService;
 import com.microservices.api.core.review.Review;
 import com.microservices.api.core.review.ReviewService;
 import com.microservices.api.exception.InvalidInputException;
 import com.microservices.api.exception.NotFoundException;
-import com.microservices.util.HttpErrorInfo;
+import com.microservices.api.exception.ServiceUnavailableException;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.reactor.bulkhead.operator.BulkheadOperator;
+import io.github.resilience4j.reactor.circuitbreaker.operator.CircuitBreakerOperator;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.ParameterizedTypeReference;
-import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.stereotype.Component;
-import org.springframework.web.client.HttpClientErrorException;
-import org.springframework.web.client.RestTemplate;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
 
 import java.io.IOException;
-import java.util.ArrayList;
+import java.time.Duration;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+/**
+ * Non-blocking client for the core services. All calls are made with {@link WebClient}, so an in-flight
+ * request to a backend does not occupy a thread while waiting for the response. Each core service has its own
+ * connection pool, see {@link BackendWebClientFactory}.
+ * Concurrent identical reads, for the same productId, fields and page, are coalesced into a single call per backend.
+ * Every call goes through a bulkhead and a circuit breaker of its backend, named product, recommendation and
+ * review, so a slow or failing backend only uses up its own share of concurrent calls and is failed fast while
+ * its breaker is open, instead of holding on to resources needed to call the other backends.
+ * Reads for a single productId are hedged, see {@link RequestHedger}.
+ * The duration of every call, hedged or not, is recorded in the integration.calls timer.
+ */
 @Component
 public class ProductCompositeIntegration implements ProductService, RecommendationService, ReviewService {
 
     private final Logger LOG = LoggerFactory.getLogger(ProductCompositeIntegration.class);
 
-    private final RestTemplate restTemplate;
+    private final WebClient productWebClient;
+    private final WebClient recommendationWebClient;
+    private final WebClient reviewWebClient;
     private final ObjectMapper objectMapper;
 
     private final String productServiceUrl;
     private final String recommendationServiceUrl;
     private final String reviewServiceUrl;
 
+    private final CircuitBreaker productCircuitBreaker;
+    private final CircuitBreaker recommendationCircuitBreaker;
+    private final CircuitBreaker reviewCircuitBreaker;
+
+    private final Bulkhead productBulkhead;
+    private final Bulkhead recommendationBulkhead;
+    private final Bulkhead reviewBulkhead;
+
+    private final RequestHedger hedger;
+
+    private final MeterRegistry registry;
+
+    /**
+     * The integration.calls timers per method, every method calls a single backend.
+     */
+    private final Map<String, CallTimers> callTimers = new ConcurrentHashMap<>();
+
+    private final RequestCoalescer<Integer, Product> productCoalescer = new RequestCoalescer<>("getProduct");
+    private final RequestCoalescer<String, Recommendation> recommendationCoalescer = new RequestCoalescer<>("getRecommendations");
+    private final RequestCoalescer<String, Review> reviewCoalescer = new RequestCoalescer<>("getReviews");
+    private final RequestCoalescer<Integer, RatingStats> ratingStatsCoalescer = new RequestCoalescer<>("getRatingStats");
+
     @Autowired
-    public ProductCompositeIntegration(RestTemplate restTemplate, ObjectMapper objectMapper,
+    public ProductCompositeIntegration(BackendWebClientFactory webClientFactory, ObjectMapper objectMapper,
+                                       CircuitBreakerRegistry circuitBreakerRegistry, BulkheadRegistry bulkheadRegistry,
+                                       RequestHedger hedger, MeterRegistry registry,
                                        @Value("${app.product-service.host}") String productServiceHost,
                                        @Value("${app.product-service.port}") int productServicePort,
+                                       @Value("${app.product-service.instances}") List<String> productServiceInstances,
+                                       @Value("${app.product-service.max-connections}") int productServiceMaxConnections,
+                                       @Value("${app.product-service.timeout}") Duration productServiceTimeout,
                                        @Value("${app.recommendation-service.host}") String recommendationServiceHost,
                                        @Value("${app.recommendation-service.port}") int recommendationServicePort,
+                                       @Value("${app.recommendation-service.instances}") List<String> recommendationServiceInstances,
+                                       @Value("${app.recommendation-service.max-connections}") int recommendationServiceMaxConnections,
+                                       @Value("${app.recommendation-service.timeout}") Duration recommendationServiceTimeout,
                                        @Value("${app.review-service.host}") String reviewServiceHost,
-                                       @Value("${app.review-service.port}") int reviewServicePort) {
-        this.restTemplate = restTemplate;
+                                       @Value("${app.review-service.port}") int reviewServicePort,
+                                       @Value("${app.review-service.instances}") List<String> reviewServiceInstances,
+                                       @Value("${app.review-service.max-connections}") int reviewServiceMaxConnections,
+                                       @Value("${app.review-service.timeout}") Duration reviewServiceTimeout) {
+        this.productWebClient = webClientFactory.create("product-service", productServiceInstances, productServiceMaxConnections, productServiceTimeout);
+        this.recommendationWebClient = webClientFactory.create("recommendation-service", recommendationServiceInstances, recommendationServiceMaxConnections, recommendationServiceTimeout);
+        this.reviewWebClient = webClientFactory.create("review-service", reviewServiceInstances, reviewServiceMaxConnections, reviewServiceTimeout);
         this.objectMapper = objectMapper;
 
+        this.productCircuitBreaker = circuitBreakerRegistry.circuitBreaker("product");
+        this.recommendationCircuitBreaker = circuitBreakerRegistry.circuitBreaker("recommendation");
+        this.reviewCircuitBreaker = circuitBreakerRegistry.circuitBreaker("review");
+
+        this.productBulkhead = bulkheadRegistry.bulkhead("product");
+        this.recommendationBulkhead = bulkheadRegistry.bulkhead("recommendation");
+        this.reviewBulkhead = bulkheadRegistry.bulkhead("review");
+
+        this.hedger = hedger;
+        this.registry = registry;
+
         this.productServiceUrl = "http://"+productServiceHost + ":" + productServicePort + "/product";
         this.recommendationServiceUrl = "http://"+recommendationServiceHost + ":" + recommendationServicePort + "/recommendation";
         this.reviewServiceUrl = "http://" + reviewServiceHost + ":" + reviewServicePort + "/review";
     }
 
     @Override
-    public Product createProduct(Product body) {
-        try{
-            String url = productServiceUrl;
-            LOG.debug("Will post a new product to URL: {}", url);
-
-            Product product = restTemplate.postForObject(url, body, Product.class);
-            LOG.debug("Created a product with productId: {}", product.getProductId());
+    public Mono<Product> createProduct(Product body, String idempotencyKey) {
+        String url = productServiceUrl;
+        LOG.debug("Will post a new product to URL: {}", url);
+
+        return protect("createProduct", productWebClient.post().uri(url)
+                .headers(headers -> setIdempotencyKey(headers, idempotencyKey))
+                .bodyValue(body)
+                .retrieve()
+                .bodyToMono(Product.class)
+                .doOnNext(product -> LOG.debug("Created a product with productId: {}", product.getProductId()))
+                .onErrorMap(WebClientResponseException.class, this::handleHttpClientException),
+                productCircuitBreaker, productBulkhead);
+    }
 
-            return product;
-        } catch (HttpClientErrorException ex) {
-            throw handleHttpClientException(ex);
-        }
+    @Override
+    public Flux<Product> createProducts(List<Product> body) {
+        String url = productServiceUrl + "/batch";
+        LOG.debug("Will post {} new products to URL: {}", body.size(), url);
+
+        return protect("createProducts", productWebClient.post().uri(url)
+                .bodyValue(body)
+                .retrieve()
+                .bodyToFlux(Product.class)
+                .onErrorMap(WebClientResponseException.class, this::handleHttpClientException),
+                productCircuitBreaker, productBulkhead);
     }
 
     @Override
-    public Product getProduct(int productId) {
-        try {
+    public Mono<Product> getProduct(int productId) {
+        return productCoalescer.execute(productId, () -> hedger.hedge("product", () -> {
             String url = productServiceUrl + "/" + productId;
-            LOG.debug("Will call getProduct API on url: " + url);
-
-            Product product = restTemplate.getForObject(url, Product.class);
-            LOG.debug("Found a product with id: {}", productId);
-            return product;
-        } catch (HttpClientErrorException ex) {
-            throw handleHttpClientException(ex);
-        }
+            LOG.debug("Will call getProduct API on url: {}", url);
+
+            return protect("getProduct", productWebClient.get().uri(url)
+                    .retrieve()
+                    .bodyToMono(Product.class)
+                    .doOnNext(product -> LOG.debug("Found a product with id: {}", productId))
+                    .onErrorMap(WebClientResponseException.class, this::handleHttpClientException),
+                    productCircuitBreaker, productBulkhead);
+        }));
     }
 
+    @Override
+    public Flux<Product> getProducts(List<Integer> productIds) {
+        String url = productServiceUrl + "?productIds=" + joinProductIds(productIds);
+        LOG.debug("Will call getProducts API on url: {}", url);
+
+        return protect("getProducts", productWebClient.get().uri(url)
+                .retrieve()
+                .bodyToFlux(Product.class)
+                .onErrorMap(WebClientResponseException.class, this::handleHttpClientException),
+                productCircuitBreaker, productBulkhead);
+    }
 
+    @Override
+    public Mono<Void> deleteProduct(int productId) {
+        String url = productServiceUrl + "/" + productId;
+        LOG.debug("Will call deleteProduct API on url: {}", url);
+
+        return protect("deleteProduct", productWebClient.delete().uri(url)
+                .retrieve()
+                .bodyToMono(Void.class)
+                .doOnSuccess(v -> LOG.debug("Deleted a product with id: {}", productId))
+                .onErrorMap(WebClientResponseException.class, this::handleHttpClientException),
+                productCircuitBreaker, productBulkhead);
+    }
 
     @Override
-    public void deleteProduct(int productId) {
-        try {
-            String url = productServiceUrl + "/" + productId;
-            LOG.debug("Will call deleteProduct API on url: " + url);
+    public Mono<Recommendation> createRecommendation(Recommendation body, String idempotencyKey) {
+        String url = recommendationServiceUrl;
+        LOG.debug("Will post a new recommendation on URL: {}", url);
+
+        return protect("createRecommendation", recommendationWebClient.post().uri(url)
+                .headers(headers -> setIdempotencyKey(headers, idempotencyKey))
+                .bodyValue(body)
+                .retrieve()
+                .bodyToMono(Recommendation.class)
+                .doOnNext(recommendation -> LOG.debug("Created a recommendation with id: {}", recommendation.getProductId()))
+                .onErrorMap(WebClientResponseException.class, this::handleHttpClientException),
+                recommendationCircuitBreaker, recommendationBulkhead);
+    }
 
-            restTemplate.delete(url);
-            LOG.debug("Deleted a product with id: {}", productId);
-        } catch (HttpClientErrorException ex) {
-            throw handleHttpClientException(ex);
-        }
+    @Override
+    public Flux<Recommendation> createRecommendations(List<Recommendation> body) {
+        String url = recommendationServiceUrl + "/batch";
+        LOG.debug("Will post {} new recommendations on URL: {}", body.size(), url);
+
+        return protect("createRecommendations", recommendationWebClient.post().uri(url)
+                .bodyValue(body)
+                .retrieve()
+                .bodyToFlux(Recommendation.class)
+                .onErrorMap(WebClientResponseException.class, this::handleHttpClientException),
+                recommendationCircuitBreaker, recommendationBulkhead);
     }
 
     @Override
-    public Recommendation createRecommendation(Recommendation body) {
-        try {
-            String url = recommendationServiceUrl;
-            LOG.debug("Will post a new recommendation on URL: {}",url);
+    public Flux<Recommendation> getRecommendations(int productId, List<String> fields, Integer limit, Integer afterRecommendationId) {
+        String url = recommendationServiceUrl + "?productId=" + productId + fieldsQuery(fields) + pageQuery(limit, afterRecommendationId);
+        return recommendationCoalescer.executeMany(url, () -> hedger.hedgeMany("recommendation", () -> {
+            LOG.debug("Will call getRecommendations API on url: {}", url);
+
+            return protect("getRecommendations", recommendationWebClient.get().uri(url)
+                    .retrieve()
+                    .bodyToFlux(Recommendation.class)
+                    .onErrorMap(WebClientResponseException.class, this::handleHttpClientException),
+                    recommendationCircuitBreaker, recommendationBulkhead);
+        })
+                .onErrorResume(ex -> {
+                    LOG.warn("Got an exception while requesting recommendations, return zero recommendations: {}", ex.getMessage());
+                    return Flux.empty();
+                }));
+    }
 
-            Recommendation recommendation = restTemplate.postForObject(url, body, Recommendation.class);
-            LOG.debug("Created a recommendation with id: {}", recommendation.getProductId());
+    @Override
+    public Flux<Recommendation> getRecommendationsForProducts(List<Integer> productIds, Integer limit) {
+        String url = recommendationServiceUrl + "?productIds=" + joinProductIds(productIds) + pageQuery(limit, null);
+        LOG.debug("Will call getRecommendationsForProducts API on url: {}", url);
+
+        return protect("getRecommendationsForProducts", recommendationWebClient.get().uri(url)
+                .retrieve()
+                .bodyToFlux(Recommendation.class)
+                .onErrorMap(WebClientResponseException.class, this::handleHttpClientException),
+                recommendationCircuitBreaker, recommendationBulkhead)
+                .onErrorResume(ex -> {
+                    LOG.warn("Got an exception while requesting recommendations, return zero recommendations: {}", ex.getMessage());
+                    return Flux.empty();
+                });
+    }
 
-            return recommendation;
-        } catch (HttpClientErrorException ex) {
-            throw handleHttpClientException(ex);
-        }
+    @Override
+    public Mono<RatingStats> getRatingStats(int productId) {
+        return ratingStatsCoalescer.execute(productId, () -> hedger.hedge("rating-stats", () -> {
+            String url = recommendationServiceUrl + "/rating-stats?productId=" + productId;
+            LOG.debug("Will call getRatingStats API on url: {}", url);
+
+            return protect("getRatingStats", recommendationWebClient.get().uri(url)
+                    .retrieve()
+                    .bodyToMono(RatingStats.class)
+                    .onErrorMap(WebClientResponseException.class, this::handleHttpClientException),
+                    recommendationCircuitBreaker, recommendationBulkhead);
+        }));
     }
 
     @Override
-    public List<Recommendation> getRecommendations(int productId) {
-        try {
-            String url = recommendationServiceUrl + "?productId=" + productId;
-            LOG.debug("Will call getRecommendations API on url: {}", url);
+    public Flux<RatingStats> getRatingStatsForProducts(List<Integer> productIds) {
+        String url = recommendationServiceUrl + "/rating-stats?productIds=" + joinProductIds(productIds);
+        LOG.debug("Will call getRatingStatsForProducts API on url: {}", url);
+
+        return protect("getRatingStatsForProducts", recommendationWebClient.get().uri(url)
+                .retrieve()
+                .bodyToFlux(RatingStats.class)
+                .onErrorMap(WebClientResponseException.class, this::handleHttpClientException),
+                recommendationCircuitBreaker, recommendationBulkhead);
+    }
 
-            List<Recommendation> list = restTemplate.
-                    exchange(url, HttpMethod.GET, null, new ParameterizedTypeReference<List<Recommendation>>() {}).getBody();
-            LOG.debug("Found {} recommendations for a product with id: {}", list.size(), productId);
+    @Override
+    public Flux<Recommendation> streamRecommendations(int productId) {
+        String url = recommendationServiceUrl + "/stream?productId=" + productId;
+        LOG.debug("Will call streamRecommendations API on url: {}", url);
+
+        return protect("streamRecommendations", recommendationWebClient.get().uri(url)
+                .accept(MediaType.APPLICATION_NDJSON)
+                .retrieve()
+                .bodyToFlux(Recommendation.class)
+                .onErrorMap(WebClientResponseException.class, this::handleHttpClientException),
+                recommendationCircuitBreaker, recommendationBulkhead);
+    }
 
-            return list;
-        } catch (Exception e) {
-            LOG.warn("Got an exception while requesting recommendations, return zero recommendations: {}", e.getMessage());
+    @Override
+    public Mono<Void> deleteRecommendation(int productId) {
+        String url = recommendationServiceUrl + "?productId=" + productId;
+        LOG.debug("Will call the deleteRecommendation API on URL: {}", url);
+
+        return protect("deleteRecommendation", recommendationWebClient.delete().uri(url)
+                .retrieve()
+                .bodyToMono(Void.class)
+                .onErrorMap(WebClientResponseException.class, this::handleHttpClientException),
+                recommendationCircuitBreaker, recommendationBulkhead);
+    }
 
-            return new ArrayList<>();
-        }
+    @Override
+    public Mono<Review> createReview(Review body, String idempotencyKey) {
+        String url = reviewServiceUrl;
+        LOG.debug("Will post a new review on URL: {}", url);
+
+        return protect("createReview", reviewWebClient.post().uri(url)
+                .headers(headers -> setIdempotencyKey(headers, idempotencyKey))
+                .bodyValue(body)
+                .retrieve()
+                .bodyToMono(Review.class)
+                .doOnNext(review -> LOG.debug("Created a new review with id: {}", review.getProductId()))
+                .onErrorMap(WebClientResponseException.class, this::handleHttpClientException),
+                reviewCircuitBreaker, reviewBulkhead);
     }
 
+    @Override
+    public Flux<Review> createReviews(List<Review> body) {
+        String url = reviewServiceUrl + "/batch";
+        LOG.debug("Will post {} new reviews on URL: {}", body.size(), url);
+
+        return protect("createReviews", reviewWebClient.post().uri(url)
+                .bodyValue(body)
+                .retrieve()
+                .bodyToFlux(Review.class)
+                .onErrorMap(WebClientResponseException.class, this::handleHttpClientException),
+                reviewCircuitBreaker, reviewBulkhead);
+    }
 
     @Override
-    public void deleteRecommendation(int productId) {
-        try {
-            String url = recommendationServiceUrl + "?productId=" + productId;
-            LOG.debug("Will call the deleteRecommendation API on URL: {}", url);
+    public Flux<Review> getReviews(int productId, List<String> fields, Integer limit, Integer afterReviewId) {
+        String url = reviewServiceUrl + "?productId=" + productId + fieldsQuery(fields) + pageQuery(limit, afterReviewId);
+        return reviewCoalescer.executeMany(url, () -> hedger.hedgeMany("review", () -> {
+            LOG.debug("Will call getReviews API on url: {}", url);
 
-            restTemplate.delete(url);
-        } catch (HttpClientErrorException ex) {
-            throw handleHttpClientException(ex);
-        }
+            return protect("getReviews", reviewWebClient.get().uri(url)
+                    .retrieve()
+                    .bodyToFlux(Review.class)
+                    .onErrorMap(WebClientResponseException.class, this::handleHttpClientException),
+                    reviewCircuitBreaker, reviewBulkhead);
+        })
+                .onErrorResume(ex -> {
+                    LOG.warn("Got an exception while requesting reviews, return zero reviews: {}", ex.getMessage());
+                    return Flux.empty();
+                }));
     }
 
     @Override
-    public Review createReview(Review body) {
-        try {
-            String url = reviewServiceUrl;
-            LOG.debug("Will post a new review on URL: {}", url);
+    public Flux<Review> getReviewsForProducts(List<Integer> productIds, Integer limit) {
+        String url = reviewServiceUrl + "?productIds=" + joinProductIds(productIds) + pageQuery(limit, null);
+        LOG.debug("Will call getReviewsForProducts API on url: {}", url);
+
+        return protect("getReviewsForProducts", reviewWebClient.get().uri(url)
+                .retrieve()
+                .bodyToFlux(Review.class)
+                .onErrorMap(WebClientResponseException.class, this::handleHttpClientException),
+                reviewCircuitBreaker, reviewBulkhead)
+                .onErrorResume(ex -> {
+                    LOG.warn("Got an exception while requesting reviews, return zero reviews: {}", ex.getMessage());
+                    return Flux.empty();
+                });
+    }
 
-            Review review = restTemplate.postForObject(url, body, Review.class);
-            LOG.debug("Created a new review with id: {}", review.getProductId());
-            return review;
-        } catch (HttpClientErrorException ex) {
-            throw handleHttpClientException(ex);
-        }
+    @Override
+    public Flux<Review> streamReviews(int productId) {
+        String url = reviewServiceUrl + "/stream?productId=" + productId;
+        LOG.debug("Will call streamReviews API on url: {}", url);
+
+        return protect("streamReviews", reviewWebClient.get().uri(url)
+                .accept(MediaType.APPLICATION_NDJSON)
+                .retrieve()
+                .bodyToFlux(Review.class)
+                .onErrorMap(WebClientResponseException.class, this::handleHttpClientException),
+                reviewCircuitBreaker, reviewBulkhead);
     }
 
     @Override
-    public List<Review> getReviews(int productId) {
-        try {
-            String url = reviewServiceUrl + "?productId=" + productId;
-            LOG.debug("Will call getReviews API on url: {}", url);
+    public Mono<Void> deleteReview(int productId) {
+        String url = reviewServiceUrl + "?productId=" + productId;
+        LOG.debug("Will call deleteReview API on URL: {}", url);
+
+        return protect("deleteReview", reviewWebClient.delete().uri(url)
+                .retrieve()
+                .bodyToMono(Void.class)
+                .onErrorMap(WebClientResponseException.class, this::handleHttpClientException),
+                reviewCircuitBreaker, reviewBulkhead);
+    }
 
-            List<Review> list = restTemplate.exchange(url, HttpMethod.GET, null,
-                    new ParameterizedTypeReference<List<Review>>(){}).getBody();
-            LOG.debug("Found {} reviews for a product with id: {}", list.size(), productId);
+    private <T> Mono<T> protect(String method, Mono<T> call, CircuitBreaker circuitBreaker, Bulkhead bulkhead) {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            AtomicReference<Throwable> error = new AtomicReference<>();
+            return call
+                    .transformDeferred(BulkheadOperator.of(bulkhead))
+                    .transformDeferred(CircuitBreakerOperator.of(circuitBreaker))
+                    .onErrorMap(this::isRejectedCall, this::handleRejectedCall)
+                    .doOnError(error::set)
+                    .doFinally(signal -> recordCall(circuitBreaker.getName(), method, signal, error.get(), start));
+        });
+    }
 
-            return list;
-        } catch (Exception ex) {
-            LOG.warn("Got an exception while requesting reviews, return zero reviews: {}", ex.getMessage());
+    private <T> Flux<T> protect(String method, Flux<T> call, CircuitBreaker circuitBreaker, Bulkhead bulkhead) {
+        return Flux.defer(() -> {
+            long start = System.nanoTime();
+            AtomicReference<Throwable> error = new AtomicReference<>();
+            return call
+                    .transformDeferred(BulkheadOperator.of(bulkhead))
+                    .transformDeferred(CircuitBreakerOperator.of(circuitBreaker))
+                    .onErrorMap(this::isRejectedCall, this::handleRejectedCall)
+                    .doOnError(error::set)
+                    .doFinally(signal -> recordCall(circuitBreaker.getName(), method, signal, error.get(), start));
+        });
+    }
 
-            return new ArrayList<>();
+    /**
+     * Records a call in the integration.calls timer, tagged with the backend, the method, the outcome
+     * SUCCESS, ERROR or CANCELLED, and the simple class name of the exception of a failed call.
+     * Calls rejected by a bulkhead or an open circuit breaker are recorded as well, with a ServiceUnavailableException.
+     * The timers are looked up in {@link CallTimers}, so recording a call does not build a meter id.
+     */
+    private void recordCall(String backend, String method, SignalType signal, Throwable error, long start) {
+        CallTimers timers = callTimers.get(method);
+        if (timers == null) {
+            timers = callTimers.computeIfAbsent(method, m -> new CallTimers(backend, m));
         }
+        Timer timer = signal == SignalType.CANCEL ? timers.cancelled : error == null ? timers.success : timers.error(error);
+        timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
     }
 
-    @Override
-    public void deleteReview(int productId) {
-        try {
-            String url = reviewServiceUrl + "?productId=" + productId;
-            LOG.debug("Will call deleteReview API on URL: {}", url);
+    /**
+     * The integration.calls timers of one method of a backend. The SUCCESS and CANCELLED timers are registered
+     * up front, the ERROR timers when the first exception of a class is recorded.
+     */
+    private final class CallTimers {
+
+        private final String backend;
+        private final String method;
+        private final Timer success;
+        private final Timer cancelled;
+        private final Map<Class<?>, Timer> errors = new ConcurrentHashMap<>();
+
+        CallTimers(String backend, String method) {
+            this.backend = backend;
+            this.method = method;
+            this.success = register("SUCCESS", "none");
+            this.cancelled = register("CANCELLED", "none");
+        }
+
+        Timer error(Throwable error) {
+            Timer timer = errors.get(error.getClass());
+            if (timer == null) {
+                timer = errors.computeIfAbsent(error.getClass(), type -> register("ERROR", type.getSimpleName()));
+            }
+            return timer;
+        }
+
+        private Timer register(String outcome, String exception) {
+            return Timer.builder("integration.calls")
+                    .description("Calls to the core services")
+                    .tag("backend", backend)
+                    .tag("method", method)
+                    .tag("outcome", outcome)
+                    .tag("exception", exception)
+                    .register(registry);
+        }
+    }
+
+    private boolean isRejectedCall(Throwable ex) {
+        return ex instanceof CallNotPermittedException || ex instanceof BulkheadFullException;
+    }
 
-            restTemplate.delete(url);
-        } catch (HttpClientErrorException ex) {
-            throw handleHttpClientException(ex);
+    private Throwable handleRejectedCall(Throwable ex) {
+        LOG.debug("Call rejected without calling the backend: {}", ex.getMessage());
+        return new ServiceUnavailableException(ex.getMessage());
+    }
+
+    private String joinProductIds(List<Integer> productIds) {
+        return productIds.stream().map(String::valueOf).collect(Collectors.joining(","));
+    }
+
+    private void setIdempotencyKey(HttpHeaders headers, String idempotencyKey) {
+        if (idempotencyKey != null) {
+            headers.set("Idempotency-Key", idempotencyKey);
         }
     }
 
-    private RuntimeException handleHttpClientException(HttpClientErrorException ex) {
+    private String fieldsQuery(List<String> fields) {
+        return fields == null ? "" : "&fields=" + String.join(",", fields);
+    }
+
+    private String pageQuery(Integer limit, Integer after) {
+        return (limit == null ? "" : "&limit=" + limit) + (after == null ? "" : "&after=" + after);
+    }
+
+    private Throwable handleHttpClientException(WebClientResponseException ex) {
         switch (ex.getStatusCode()) {
             case NOT_FOUND:
                 return new NotFoundException(getErrorMessage(ex));
@@ -198,9 +519,24 @@ public class ProductCompositeIntegration implements ProductService, Recommendati
         }
     }
 
-    private String getErrorMessage(HttpClientErrorException ex) {
-        try {
-            return objectMapper.readValue(ex.getResponseBodyAsString(), HttpErrorInfo.class).getMessage();
+    /**
+     * Reads the message of an HttpErrorInfo body with the streaming parser, straight from the bytes of the body.
+     * The other fields are skipped without being decoded, in particular the timestamp is never parsed.
+     */
+    private String getErrorMessage(WebClientResponseException ex) {
+        try (JsonParser parser = objectMapper.getFactory().createParser(ex.getResponseBodyAsByteArray())) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return null;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                JsonToken value = parser.nextToken();
+                if ("message".equals(field)) {
+                    return value == JsonToken.VALUE_NULL ? null : parser.getText();
+                }
+                parser.skipChildren();
+            }
+            return null;
         } catch (IOException e) {
             return e.getMessage();
         }
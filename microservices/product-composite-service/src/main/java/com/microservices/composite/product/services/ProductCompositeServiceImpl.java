@@ -2,15 +2,37 @@ package com.microservices.composite.product.services;
 
 import com.microservices.api.composite.product.*;
 import com.microservices.api.core.product.Product;
+import com.microservices.api.core.recommendation.RatingStats;
 import com.microservices.api.core.recommendation.Recommendation;
 import com.microservices.api.core.review.Review;
+import com.microservices.api.exception.InvalidInputException;
 import com.microservices.util.ServiceUtil;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.sleuth.CurrentTraceContext;
+import org.springframework.cloud.sleuth.Tracer;
+import org.springframework.cloud.sleuth.instrument.reactor.ReactorSleuth;
 import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @RestController
@@ -20,90 +42,353 @@ public class ProductCompositeServiceImpl implements ProductCompositeService {
 
     private ProductCompositeIntegration integration;
 
+    private final ProductAggregateCache cache;
+
+    private final RequestCoalescer<List<Object>, ProductAggregate> aggregateCoalescer = new RequestCoalescer<>("productAggregate");
+
     private final Logger LOG = LoggerFactory.getLogger(ProductCompositeServiceImpl.class);
 
+    private static final String RECOMMENDATIONS = "recommendations";
+    private static final String REVIEWS = "reviews";
+    private static final String RATINGS = "ratings";
+
+    private static final Set<String> SECTIONS = Set.of(RECOMMENDATIONS, REVIEWS, RATINGS);
+    private static final Set<String> FIELDS = Set.of("author", "subject", "content");
+    private static final Set<String> RECOMMENDATION_FIELDS = Set.of("author", "content");
+
+    private final Duration productTimeout;
+    private final Duration recommendationTimeout;
+    private final Duration reviewTimeout;
+
+    private final Duration latencyBudget;
+
+    private final int summaryLimit;
+
+    private final int batchMaxSize;
+
+    private final int importBatchSize;
+    private final int importConcurrency;
+
+    private final Timer assemblyTimer;
+
+    private final Tracer tracer;
+    private final CurrentTraceContext currentTraceContext;
+
     @Autowired
-    public ProductCompositeServiceImpl(ServiceUtil serviceUtil, ProductCompositeIntegration integration) {
+    public ProductCompositeServiceImpl(ServiceUtil serviceUtil, ProductCompositeIntegration integration,
+                                       ProductAggregateCache cache, MeterRegistry registry,
+                                       Tracer tracer, CurrentTraceContext currentTraceContext,
+                                       @Value("${app.product-service.timeout}") Duration productTimeout,
+                                       @Value("${app.recommendation-service.timeout}") Duration recommendationTimeout,
+                                       @Value("${app.review-service.timeout}") Duration reviewTimeout,
+                                       @Value("${app.product-composite.latency-budget}") Duration latencyBudget,
+                                       @Value("${app.product-composite.summary-limit}") int summaryLimit,
+                                       @Value("${app.product-composite.batch.max-size}") int batchMaxSize,
+                                       @Value("${app.product-composite.import.batch-size}") int importBatchSize,
+                                       @Value("${app.product-composite.import.concurrency}") int importConcurrency) {
         this.serviceUtil = serviceUtil;
         this.integration = integration;
+        this.cache = cache;
+        this.productTimeout = productTimeout;
+        this.recommendationTimeout = recommendationTimeout;
+        this.reviewTimeout = reviewTimeout;
+        this.latencyBudget = latencyBudget;
+        this.summaryLimit = summaryLimit;
+        this.batchMaxSize = batchMaxSize;
+        this.importBatchSize = importBatchSize;
+        this.importConcurrency = importConcurrency;
+        this.assemblyTimer = Timer.builder("composite.assembly")
+                .description("Time to assemble a composite product from the responses of the core services")
+                .register(registry);
+        this.tracer = tracer;
+        this.currentTraceContext = currentTraceContext;
     }
 
+    /**
+     * Serves the composite product from the cache if present. Otherwise the product, its recommendations, its
+     * reviews and its rating statistics are fetched concurrently, so the latency of the composite is bound by the
+     * slowest backend instead of the sum of all calls. Concurrent requests for the same product and latency budget
+     * share a single fetch. A failing or timed out product lookup fails the whole request, while recommendations
+     * and reviews degrade to an empty list, and failed rating statistics are listed as missing. Only the first
+     * {@code summaryLimit} recommendations and reviews are fetched, so the size of the response stays bounded for
+     * products with many of them.
+     * Sections that have not arrived within the latency budget, taken from the X-Latency-Budget header
+     * (in milliseconds) or else from the configuration, are returned as null and listed in the missing sections
+     * of the response. Such a partial response is not cached.
+     * The sections listed in {@code include} are the only ones fetched, the others are not requested from their
+     * backend and returned as null. If {@code fields} is given, only the ids, the rate and the listed fields of the
+     * recommendations and reviews are read by the core services. Such a reduced response is not cached either.
+     * A fetch is traced in a product-aggregate span, the parent of the spans of the calls to the core services,
+     * which pass the trace on in the headers of their requests. A fetch shared by concurrent requests belongs
+     * to the trace of the request that started it.
+     */
     @Override
-    public ProductAggregate getProduct(int productId) {
+    public Mono<ProductAggregate> getProduct(int productId, List<String> include, List<String> fields, Long latencyBudgetMillis) {
+        if (latencyBudgetMillis != null && latencyBudgetMillis < 1) {
+            throw new InvalidInputException("Invalid latency budget: " + latencyBudgetMillis + " ms");
+        }
+        if (include != null) {
+            include.forEach(section -> {
+                if (!SECTIONS.contains(section)) {
+                    throw new InvalidInputException("Invalid section to include: " + section);
+                }
+            });
+        }
+        if (fields != null) {
+            fields.forEach(field -> {
+                if (!FIELDS.contains(field)) {
+                    throw new InvalidInputException("Invalid field: " + field);
+                }
+            });
+        }
+        Duration budget = latencyBudgetMillis == null ? latencyBudget : Duration.ofMillis(latencyBudgetMillis);
+
+        if (include == null && fields == null) {
+            return cache.get(productId, () -> aggregateCoalescer.execute(Arrays.asList(productId, budget),
+                    () -> fetchProductAggregate(productId, budget, SECTIONS, null)));
+        }
+        Set<String> sections = include == null ? SECTIONS : Set.copyOf(include);
+        return aggregateCoalescer.execute(Arrays.asList(productId, budget, sections, fields),
+                () -> fetchProductAggregate(productId, budget, sections, fields));
+    }
+
+    private Mono<ProductAggregate> fetchProductAggregate(int productId, Duration budget, Set<String> sections, List<String> fields) {
+        return ReactorSleuth.tracedMono(tracer, currentTraceContext, "product-aggregate",
+                () -> fetchSections(productId, budget, sections, fields),
+                (aggregate, span) -> span.tag("product.id", String.valueOf(productId))
+                        .tag("missing.sections", String.join(",", aggregate.getMissingSections())));
+    }
+
+    private Mono<ProductAggregate> fetchSections(int productId, Duration budget, Set<String> sections, List<String> fields) {
+
+        Mono<Product> product = integration.getProduct(productId)
+                .timeout(productTimeout);
+
+        List<String> recommendationFields = fields == null ? null : fields.stream()
+                .filter(RECOMMENDATION_FIELDS::contains)
+                .collect(Collectors.toList());
+
+        Mono<Optional<List<Recommendation>>> recommendations = Mono.just(Optional.empty());
+        if (sections.contains(RECOMMENDATIONS)) {
+            recommendations = integration.getRecommendations(productId, recommendationFields, summaryLimit, null)
+                    .collectList()
+                    .timeout(recommendationTimeout)
+                    .onErrorResume(ex -> {
+                        LOG.warn("getRecommendations failed for productId: {}, return zero recommendations: {}", productId, ex.toString());
+                        return Mono.just(new ArrayList<>());
+                    })
+                    .map(Optional::of)
+                    .timeout(budget, sectionMissed(productId, RECOMMENDATIONS, budget));
+        }
+
+        Mono<Optional<List<Review>>> reviews = Mono.just(Optional.empty());
+        if (sections.contains(REVIEWS)) {
+            reviews = integration.getReviews(productId, fields, summaryLimit, null)
+                    .collectList()
+                    .timeout(reviewTimeout)
+                    .onErrorResume(ex -> {
+                        LOG.warn("getReviews failed for productId: {}, return zero reviews: {}", productId, ex.toString());
+                        return Mono.just(new ArrayList<>());
+                    })
+                    .map(Optional::of)
+                    .timeout(budget, sectionMissed(productId, REVIEWS, budget));
+        }
+
+        Mono<Optional<RatingStats>> ratings = Mono.just(Optional.empty());
+        if (sections.contains(RATINGS)) {
+            ratings = integration.getRatingStats(productId)
+                    .map(Optional::of)
+                    .timeout(recommendationTimeout)
+                    .onErrorResume(ex -> {
+                        LOG.warn("getRatingStats failed for productId: {}, return them as missing: {}", productId, ex.toString());
+                        return Mono.just(Optional.empty());
+                    })
+                    .timeout(budget, sectionMissed(productId, RATINGS, budget));
+        }
+
+        return Mono.zip(product, recommendations, reviews, ratings)
+                .map(tuple -> {
+                    List<String> missingSections = new ArrayList<>();
+                    if (sections.contains(RECOMMENDATIONS) && tuple.getT2().isEmpty()) {
+                        missingSections.add(RECOMMENDATIONS);
+                    }
+                    if (sections.contains(REVIEWS) && tuple.getT3().isEmpty()) {
+                        missingSections.add(REVIEWS);
+                    }
+                    if (sections.contains(RATINGS) && tuple.getT4().isEmpty()) {
+                        missingSections.add(RATINGS);
+                    }
+                    return assemblyTimer.record(() -> ProductAggregateAssembler.assemble(tuple.getT1(), tuple.getT2().orElse(null),
+                            tuple.getT3().orElse(null), tuple.getT4().orElse(null), serviceUtil.getServiceAddress(), missingSections));
+                })
+                .doOnError(ex -> LOG.warn("getCompositeProduct failed for productId: {}: {}", productId, ex.toString()));
+    }
 
-        Product product = integration.getProduct(productId);
-        List<Recommendation> recommendations = integration.getRecommendations(productId);
-        List<Review> reviews = integration.getReviews(productId);
-        return createProductAggregate(product, recommendations, reviews, serviceUtil.getServiceAddress());
+    private <T> Mono<Optional<T>> sectionMissed(int productId, String section, Duration budget) {
+        return Mono.fromCallable(() -> {
+            LOG.warn("No {} for productId: {} within the latency budget of {} ms, return them as missing", section, productId, budget.toMillis());
+            return Optional.empty();
+        });
     }
 
+    /**
+     * Builds the composite products for a list of product ids with one batch call per section,
+     * regardless of the number of products. Unknown product ids are skipped, and the aggregates are
+     * returned in the order of the requested ids. As for a single product, at most {@code summaryLimit}
+     * recommendations and reviews are fetched per product. The batch is traced in a product-aggregates span.
+     */
     @Override
-    public void createProduct(ProductAggregate body) {
-        try {
-            Product product = Product.getProductFromAggregate(body);
-            integration.createProduct(product);
-
-            if(body.getRecommendations() != null) {
-                body.getRecommendations().forEach(recSummary -> {
-                    Recommendation recommendation =
-                            Recommendation.recommendationFromRecommendationSummary(body.getProductId(), recSummary);
-                    integration.createRecommendation(recommendation);
+    public Flux<ProductAggregate> getProducts(List<Integer> productIds) {
+        if (productIds.isEmpty() || productIds.size() > batchMaxSize) {
+            throw new InvalidInputException("Invalid number of productIds: " + productIds.size() + ", expected 1 to " + batchMaxSize);
+        }
+        List<Integer> distinctIds = productIds.stream().distinct().collect(Collectors.toList());
+
+        Mono<Map<Integer, Product>> products = integration.getProducts(distinctIds)
+                .collectMap(Product::getProductId, Function.identity())
+                .timeout(productTimeout);
+
+        Mono<Map<Integer, List<Recommendation>>> recommendations = integration.getRecommendationsForProducts(distinctIds, summaryLimit)
+                .collect(Collectors.groupingBy(Recommendation::getProductId))
+                .timeout(recommendationTimeout)
+                .onErrorResume(ex -> {
+                    LOG.warn("getRecommendationsForProducts failed, return zero recommendations: {}", ex.toString());
+                    return Mono.just(Collections.emptyMap());
                 });
-            }
 
-            if(body.getReviews() != null) {
-                body.getReviews().forEach(reviewSummary -> {
-                    Review review = Review.reviewSummaryToReview(body.getProductId(), reviewSummary);
-                    integration.createReview(review);
+        Mono<Map<Integer, List<Review>>> reviews = integration.getReviewsForProducts(distinctIds, summaryLimit)
+                .collect(Collectors.groupingBy(Review::getProductId))
+                .timeout(reviewTimeout)
+                .onErrorResume(ex -> {
+                    LOG.warn("getReviewsForProducts failed, return zero reviews: {}", ex.toString());
+                    return Mono.just(Collections.emptyMap());
                 });
-            }
-        } catch (RuntimeException ex) {
-            LOG.warn("createCompositeProduct fail", ex);
-            throw ex;
+
+        Mono<Optional<Map<Integer, RatingStats>>> ratings = integration.getRatingStatsForProducts(distinctIds)
+                .collectMap(RatingStats::getProductId, Function.identity())
+                .map(Optional::of)
+                .timeout(recommendationTimeout)
+                .onErrorResume(ex -> {
+                    LOG.warn("getRatingStatsForProducts failed, return them as missing: {}", ex.toString());
+                    return Mono.just(Optional.empty());
+                });
+
+        String serviceAddress = serviceUtil.getServiceAddress();
+        return ReactorSleuth.tracedFlux(tracer, currentTraceContext, "product-aggregates", () -> Mono.zip(products, recommendations, reviews, ratings)
+                .flatMapIterable(tuple -> distinctIds.stream()
+                        .filter(productId -> tuple.getT1().containsKey(productId))
+                        .map(productId -> assemblyTimer.record(() -> ProductAggregateAssembler.assemble(
+                                tuple.getT1().get(productId),
+                                tuple.getT2().getOrDefault(productId, Collections.emptyList()),
+                                tuple.getT3().getOrDefault(productId, Collections.emptyList()),
+                                tuple.getT4().map(stats -> stats.getOrDefault(productId, RatingStats.empty(productId))).orElse(null),
+                                serviceAddress,
+                                tuple.getT4().isPresent() ? Collections.emptyList() : Collections.singletonList(RATINGS))))
+                        .collect(Collectors.toList())))
+                .doOnError(ex -> LOG.warn("getCompositeProducts failed: {}", ex.toString()));
+    }
+
+    /**
+     * Creates the product first, then posts all its recommendations and all its reviews concurrently,
+     * with a single bulk request per backend. The product is created with the {@code Idempotency-Key} of the client,
+     * or if the client sent none, with a key derived from a SHA-256 hash of its productId, weight and name. Either way
+     * a retried create of the same product is answered by the product service as a replay instead of a duplicate,
+     * while a different product with the same productId is still rejected.
+     */
+    @Override
+    public Mono<Void> createProduct(ProductAggregate body, String idempotencyKey) {
+        Product product = Product.getProductFromAggregate(body);
+
+        return integration.createProduct(product, idempotencyKey != null ? idempotencyKey : idempotencyKey(product))
+                .then(Mono.defer(() -> createRecommendationsAndReviews(Collections.singletonList(body))))
+                .doOnError(ex -> LOG.warn("createCompositeProduct fail", ex))
+                .doFinally(signal -> invalidate(body.getProductId()));
+    }
+
+    /**
+     * The name comes last, so no name can make the fields of two different products hash the same input.
+     */
+    private static String idempotencyKey(Product product) {
+        String canonicalProduct = product.getProductId() + "\n" + product.getWeight() + "\n" + product.getName();
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(canonicalProduct.getBytes(StandardCharsets.UTF_8));
+            return "product-composite:" + product.getProductId() + ":" + Base64.getUrlEncoder().withoutPadding().encodeToString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
         }
     }
 
+    /**
+     * Imports a stream of composite products. The records are decoded one by one as the request body arrives
+     * and grouped into batches, each batch is written with one bulk request per backend, and at most
+     * {@code importConcurrency} batches are in flight at any time, so a slow backend slows down the reading of
+     * the request body instead of filling up the memory. The result of each record is returned in the order
+     * of the records. If the products of a batch are rejected as invalid, for example because one of them already
+     * exists, the batch is retried record by record to find out which records failed. Other errors, like an
+     * unavailable or timed out product service, fail all records of the batch without a retry, since the batch
+     * may have been stored anyway.
+     */
+    @Override
+    public Flux<ProductImportResult> importProducts(Flux<ProductAggregate> body) {
+        return body
+                .buffer(importBatchSize)
+                .flatMapSequential(this::importBatch, importConcurrency);
+    }
+
+    private Flux<ProductImportResult> importBatch(List<ProductAggregate> batch) {
+        List<Product> products = batch.stream().map(Product::getProductFromAggregate).collect(Collectors.toList());
+
+        return integration.createProducts(products)
+                .thenMany(Mono.defer(() -> createRecommendationsAndReviews(batch))
+                        .thenMany(Flux.fromIterable(batch).map(aggregate -> ProductImportResult.imported(aggregate.getProductId())))
+                        .onErrorResume(ex -> Flux.fromIterable(batch)
+                                .map(aggregate -> ProductImportResult.failed(aggregate.getProductId(),
+                                        "Product created, but its recommendations or reviews failed: " + ex.getMessage()))))
+                .onErrorResume(ex -> {
+                    if (batch.size() == 1 || !(ex instanceof InvalidInputException)) {
+                        return Flux.fromIterable(batch).map(aggregate -> ProductImportResult.failed(aggregate.getProductId(), ex.getMessage()));
+                    }
+                    LOG.warn("importProducts: failed to create a batch of {} products, will retry them one by one: {}", batch.size(), ex.toString());
+                    return Flux.fromIterable(batch).concatMap(aggregate -> importBatch(Collections.singletonList(aggregate)));
+                })
+                .doFinally(signal -> batch.forEach(aggregate -> invalidate(aggregate.getProductId())));
+    }
+
+    private Mono<Void> createRecommendationsAndReviews(List<ProductAggregate> aggregates) {
+        List<Recommendation> recommendations = aggregates.stream()
+                .filter(aggregate -> aggregate.getRecommendations() != null)
+                .flatMap(aggregate -> aggregate.getRecommendations().stream()
+                        .map(recSummary -> Recommendation.recommendationFromRecommendationSummary(aggregate.getProductId(), recSummary)))
+                .collect(Collectors.toList());
+
+        List<Review> reviews = aggregates.stream()
+                .filter(aggregate -> aggregate.getReviews() != null)
+                .flatMap(aggregate -> aggregate.getReviews().stream()
+                        .map(reviewSummary -> Review.reviewSummaryToReview(aggregate.getProductId(), reviewSummary)))
+                .collect(Collectors.toList());
+
+        return Flux.merge(
+                recommendations.isEmpty() ? Flux.empty() : integration.createRecommendations(recommendations),
+                reviews.isEmpty() ? Flux.empty() : integration.createReviews(reviews))
+                .then();
+    }
+
     @Override
-    public void deleteProduct(int productId) {
-        integration.deleteProduct(productId);
-        integration.deleteReview(productId);
-        integration.deleteRecommendation(productId);
+    public Mono<Void> deleteProduct(int productId) {
+        return Mono.when(
+                integration.deleteProduct(productId),
+                integration.deleteReview(productId),
+                integration.deleteRecommendation(productId))
+                .doFinally(signal -> invalidate(productId));
     }
 
-    private ProductAggregate createProductAggregate(Product product,
-                                                   List<Recommendation> recommendations,
-                                                   List<Review> reviews,
-                                                   String serviceAddress) {
-        //1.product information
-        int productId = product.getProductId();
-        String name = product.getName();
-        int weight = product.getWeight();
-
-        //2.recommendationSummary if any
-        List<RecommendationSummary> recommendationSummaries =
-                (recommendations == null) ? null : recommendations.stream()
-                        .map(r -> new RecommendationSummary(r.getRecommendationId(), r.getAuthor(), r.getRate(), r.getContent()))
-                        .collect(Collectors.toList());
-
-        //3.reviewSummary list if any
-        List<ReviewSummary> reviewSummaries =
-                (reviews == null) ? null : reviews.stream()
-                        .map(r -> new ReviewSummary(r.getReviewId(), r.getAuthor(), r.getSubject(), r.getContent()))
-                        .collect(Collectors.toList());
-
-        //4. Create ServiceAddresses, info regarding the involved microservices addresses
-        String productAddress = product.getServiceAddress();
-        String reviewAddress = (reviews != null && reviews.size() > 0) ? reviews.get(0).getServiceAddress() : "";
-        String recommendationAddress = (recommendations != null && recommendations.size() > 0) ? recommendations.get(0).getServiceAddress() : "";
-        ServiceAddresses serviceAddresses = new ServiceAddresses(serviceAddress, productAddress, reviewAddress, recommendationAddress);
-
-        return new ProductAggregate(
-                productId,
-                name,
-                weight,
-                recommendationSummaries,
-                reviewSummaries,
-                serviceAddresses
-        );
+    /**
+     * Invalidates the cached composite product after a write. The in-flight fetches of the product are released
+     * first, so a cache miss arriving after the write starts a new fetch instead of joining one that started
+     * before the write, which would put the outdated product in the cache.
+     */
+    private void invalidate(int productId) {
+        aggregateCoalescer.release(key -> key.get(0).equals(productId));
+        cache.invalidate(productId);
     }
 }
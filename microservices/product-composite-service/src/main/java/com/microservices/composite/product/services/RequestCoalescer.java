@@ -0,0 +1,73 @@
+package com.microservices.composite.product.services;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Lets concurrent subscribers asking for the same key share a single upstream call ("single flight").
+ * The first subscriber for a key triggers the call, subscribers arriving while it is in flight join it and
+ * receive the same signals. The key is released as soon as the call terminates, so results are never
+ * reused once the call is completed. The upstream call is cancelled only when every subscriber has cancelled.
+ *
+ * @param <K> the type of the key identifying identical calls
+ * @param <V> the type of the elements emitted by the call
+ */
+public class RequestCoalescer<K, V> {
+
+    private static final Logger LOG = LoggerFactory.getLogger(RequestCoalescer.class);
+
+    private final String name;
+
+    private final ConcurrentMap<K, Flux<V>> inFlight = new ConcurrentHashMap<>();
+
+    public RequestCoalescer(String name) {
+        this.name = name;
+    }
+
+    public Mono<V> execute(K key, Supplier<Mono<V>> call) {
+        return executeMany(key, () -> call.get().flux()).singleOrEmpty();
+    }
+
+    public Flux<V> executeMany(K key, Supplier<Flux<V>> call) {
+        return Flux.defer(() -> {
+            Flux<V> shared = inFlight.get(key);
+            if (shared != null) {
+                LOG.debug("{}: joins the in-flight call for key: {}", name, key);
+                return shared;
+            }
+            return inFlight.computeIfAbsent(key, k -> share(k, call));
+        });
+    }
+
+    private Flux<V> share(K key, Supplier<Flux<V>> call) {
+        @SuppressWarnings("unchecked")
+        Flux<V>[] self = new Flux[1];
+        Runnable release = () -> inFlight.remove(key, self[0]);
+        self[0] = call.get()
+                .doOnTerminate(release)
+                .doOnCancel(release)
+                .replay()
+                .refCount();
+        return self[0];
+    }
+
+    /**
+     * Releases the in-flight calls whose key matches, so subscribers arriving later start a new call instead of
+     * joining one that may have read outdated data. Subscribers that already joined a released call still
+     * receive its signals.
+     */
+    public void release(Predicate<K> keys) {
+        inFlight.keySet().removeIf(keys);
+    }
+
+    int inFlightCount() {
+        return inFlight.size();
+    }
+}
@@ -0,0 +1,193 @@
+package com.microservices.composite.product.services;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Hedges idempotent calls to the core services: if a call has not emitted anything after the hedge delay of its
+ * backend, a second, identical call is started and whichever call signals first is used, the other one is cancelled.
+ * The hedge delay is the configured percentile of the recent latencies of the backend, kept within
+ * {@code min-delay} and {@code max-delay}, and is recomputed once a second. Every call earns {@code max-rate} of a hedge, and a hedge is only sent
+ * when a whole one has been earned, so at most that share of the calls to a backend is hedged.
+ * Latencies are published in the {@code http.client.hedging.latency} timer and hedges in the
+ * {@code http.client.hedges} counter, tagged with the backend and the outcome sent, won or rejected.
+ */
+@Component
+public class RequestHedger {
+
+    private static final Logger LOG = LoggerFactory.getLogger(RequestHedger.class);
+
+    private static final long HEDGE_COST = 1000;
+    private static final long MAX_SAVED_HEDGES = 10;
+    private static final long MIN_SAMPLES = 20;
+    private static final Duration DELAY_REFRESH_INTERVAL = Duration.ofSeconds(1);
+
+    private final MeterRegistry registry;
+
+    private final boolean enabled;
+    private final double percentile;
+    private final Duration minDelay;
+    private final Duration maxDelay;
+    private final long creditPerCall;
+
+    private final ConcurrentMap<String, BackendHedging> backends = new ConcurrentHashMap<>();
+
+    @Autowired
+    public RequestHedger(MeterRegistry registry,
+                         @Value("${app.product-composite.hedging.enabled}") boolean enabled,
+                         @Value("${app.product-composite.hedging.percentile}") double percentile,
+                         @Value("${app.product-composite.hedging.min-delay}") Duration minDelay,
+                         @Value("${app.product-composite.hedging.max-delay}") Duration maxDelay,
+                         @Value("${app.product-composite.hedging.max-rate}") double maxRate) {
+        this.registry = registry;
+        this.enabled = enabled;
+        this.percentile = percentile;
+        this.minDelay = minDelay;
+        this.maxDelay = maxDelay;
+        this.creditPerCall = Math.round(maxRate * HEDGE_COST);
+    }
+
+    public <T> Mono<T> hedge(String backend, Supplier<Mono<T>> call) {
+        return hedgeMany(backend, () -> call.get().flux()).singleOrEmpty();
+    }
+
+    public <T> Flux<T> hedgeMany(String backend, Supplier<Flux<T>> call) {
+        BackendHedging hedging = backends.computeIfAbsent(backend, BackendHedging::new);
+        if (!enabled) {
+            return hedging.timed(call);
+        }
+
+        return Flux.defer(() -> {
+            hedging.earnCredit();
+            Duration delay = hedging.delay();
+
+            Flux<T> hedge = Mono.delay(delay)
+                    .flatMapMany(tick -> {
+                        if (!hedging.tryAcquireHedge()) {
+                            hedging.rejected.increment();
+                            return Flux.never();
+                        }
+                        LOG.debug("{}: no response after {} ms, sends a hedged call", backend, delay.toMillis());
+                        hedging.sent.increment();
+                        AtomicBoolean signalled = new AtomicBoolean();
+                        return hedging.timed(call).doOnEach(signal -> {
+                            if (!signal.isOnError() && signalled.compareAndSet(false, true)) {
+                                hedging.won.increment();
+                            }
+                        });
+                    });
+
+            return Flux.firstWithSignal(hedging.timed(call), hedge);
+        });
+    }
+
+    private class BackendHedging {
+
+        private final Timer latency;
+        private final Counter sent;
+        private final Counter won;
+        private final Counter rejected;
+
+        private final AtomicLong credit = new AtomicLong();
+
+        private final AtomicLong nextDelayRefresh = new AtomicLong(System.nanoTime());
+        private volatile Duration delay = maxDelay;
+
+        BackendHedging(String backend) {
+            this.latency = Timer.builder("http.client.hedging.latency")
+                    .description("Latency of idempotent calls to a backend, used to compute the hedge delay")
+                    .tag("backend", backend)
+                    .publishPercentiles(percentile)
+                    .distributionStatisticExpiry(Duration.ofMinutes(1))
+                    .register(registry);
+            this.sent = hedgeCounter(backend, "sent");
+            this.won = hedgeCounter(backend, "won");
+            this.rejected = hedgeCounter(backend, "rejected");
+        }
+
+        private Counter hedgeCounter(String backend, String outcome) {
+            return Counter.builder("http.client.hedges")
+                    .tag("backend", backend)
+                    .tag("outcome", outcome)
+                    .register(registry);
+        }
+
+        /**
+         * Times a call until its first signal, or until it is cancelled, so the slow calls that lose against
+         * their hedge and the failing calls count as well, and the hedge delay is not computed from the fast
+         * calls only.
+         */
+        <T> Flux<T> timed(Supplier<Flux<T>> call) {
+            return Flux.defer(() -> {
+                long start = System.nanoTime();
+                AtomicBoolean recorded = new AtomicBoolean();
+                Runnable record = () -> {
+                    if (recorded.compareAndSet(false, true)) {
+                        latency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                    }
+                };
+                return call.get()
+                        .doOnEach(signal -> record.run())
+                        .doOnCancel(record);
+            });
+        }
+
+        /**
+         * Returns the hedge delay, recomputed from a snapshot of the latency timer at most once per
+         * {@code DELAY_REFRESH_INTERVAL}, since a snapshot copies the whole histogram.
+         */
+        Duration delay() {
+            long now = System.nanoTime();
+            long refreshAt = nextDelayRefresh.get();
+            if (now - refreshAt >= 0 && nextDelayRefresh.compareAndSet(refreshAt, now + DELAY_REFRESH_INTERVAL.toNanos())) {
+                delay = computeDelay();
+            }
+            return delay;
+        }
+
+        private Duration computeDelay() {
+            if (latency.count() < MIN_SAMPLES) {
+                return maxDelay;
+            }
+            for (ValueAtPercentile value : latency.takeSnapshot().percentileValues()) {
+                if (value.percentile() == percentile) {
+                    long delayNanos = (long) value.value(TimeUnit.NANOSECONDS);
+                    return Duration.ofNanos(Math.max(minDelay.toNanos(), Math.min(maxDelay.toNanos(), delayNanos)));
+                }
+            }
+            return maxDelay;
+        }
+
+        void earnCredit() {
+            credit.updateAndGet(current -> Math.min(current + creditPerCall, MAX_SAVED_HEDGES * HEDGE_COST));
+        }
+
+        boolean tryAcquireHedge() {
+            long current;
+            do {
+                current = credit.get();
+                if (current < HEDGE_COST) {
+                    return false;
+                }
+            } while (!credit.compareAndSet(current, current - HEDGE_COST));
+            return true;
+        }
+    }
+}
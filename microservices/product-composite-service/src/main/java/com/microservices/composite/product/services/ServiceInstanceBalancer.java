@@ -0,0 +1,165 @@
+package com.microservices.composite.product.services;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.net.ConnectException;
+import java.net.URI;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Client-side load balancer for the replicas of a core service, applied as a {@link WebClient} filter.
+ * Each request is sent to the less busy of two randomly picked healthy instances ("power of two choices"),
+ * where busy means the number of requests sent to the instance that have not received a response yet.
+ * The host and port of the request URL are replaced with the ones of the chosen instance.
+ * <p>
+ * Every instance is checked on {@code /actuator/health} at a fixed interval, an instance that does not answer
+ * with a 2xx status is ejected until it passes a later check. An instance that can not be connected to, because
+ * the connection is refused, times out or the host is unknown, is ejected right away. Other request errors, like a
+ * read or response timeout, only fail the request: a slow response does not make an instance unhealthy.
+ * If no instance is healthy, requests are spread over all instances.
+ */
+public class ServiceInstanceBalancer implements ExchangeFilterFunction, Disposable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ServiceInstanceBalancer.class);
+
+    private final String name;
+    private final List<Instance> instances;
+    private final Disposable healthChecks;
+
+    public ServiceInstanceBalancer(String name, List<String> instanceAddresses, WebClient healthCheckClient,
+                                   Duration healthCheckInterval, Duration healthCheckTimeout) {
+        if (instanceAddresses.isEmpty()) {
+            throw new IllegalArgumentException("No instances configured for " + name);
+        }
+        this.name = name;
+        this.instances = instanceAddresses.stream()
+                .map(String::trim)
+                .map(Instance::new)
+                .collect(Collectors.toList());
+        LOG.info("{}: balances over the instances: {}", name, instanceAddresses);
+
+        this.healthChecks = Flux.interval(healthCheckInterval)
+                .onBackpressureDrop()
+                .concatMap(tick -> Flux.fromIterable(instances)
+                        .flatMap(instance -> checkHealth(instance, healthCheckClient, healthCheckTimeout)))
+                .subscribe();
+    }
+
+    @Override
+    public Mono<ClientResponse> filter(ClientRequest request, ExchangeFunction next) {
+        return Mono.defer(() -> {
+            Instance instance = choose();
+            URI url = UriComponentsBuilder.fromUri(request.url())
+                    .host(instance.host)
+                    .port(instance.port)
+                    .build(true)
+                    .toUri();
+
+            instance.outstanding.incrementAndGet();
+            return next.exchange(ClientRequest.from(request).url(url).build())
+                    .doOnError(WebClientRequestException.class, ex -> {
+                        if (instance.healthy && isConnectFailure(ex)) {
+                            LOG.warn("{}: ejects instance {} after a failed request: {}", name, instance.address, ex.getMessage());
+                            instance.healthy = false;
+                        }
+                    })
+                    .doFinally(signal -> instance.outstanding.decrementAndGet());
+        });
+    }
+
+    /**
+     * Netty reports a connect timeout as a {@link io.netty.channel.ConnectTimeoutException}, which is a
+     * {@link ConnectException} as well.
+     */
+    private static boolean isConnectFailure(Throwable ex) {
+        for (Throwable cause = ex; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ConnectException || cause instanceof UnknownHostException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public int healthyInstances() {
+        return (int) instances.stream().filter(instance -> instance.healthy).count();
+    }
+
+    @Override
+    public void dispose() {
+        healthChecks.dispose();
+    }
+
+    @Override
+    public boolean isDisposed() {
+        return healthChecks.isDisposed();
+    }
+
+    private Instance choose() {
+        List<Instance> candidates = instances.stream().filter(instance -> instance.healthy).collect(Collectors.toList());
+        if (candidates.isEmpty()) {
+            candidates = instances;
+        }
+        if (candidates.size() == 1) {
+            return candidates.get(0);
+        }
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int first = random.nextInt(candidates.size());
+        int second = random.nextInt(candidates.size() - 1);
+        if (second >= first) {
+            second++;
+        }
+        Instance a = candidates.get(first);
+        Instance b = candidates.get(second);
+        return a.outstanding.get() <= b.outstanding.get() ? a : b;
+    }
+
+    private Mono<Boolean> checkHealth(Instance instance, WebClient healthCheckClient, Duration timeout) {
+        return healthCheckClient.get().uri("http://" + instance.address + "/actuator/health")
+                .retrieve()
+                .toBodilessEntity()
+                .timeout(timeout)
+                .map(response -> true)
+                .onErrorReturn(false)
+                .doOnNext(healthy -> {
+                    if (healthy != instance.healthy) {
+                        LOG.info("{}: instance {} is {}", name, instance.address, healthy ? "healthy again" : "unhealthy, ejects it");
+                        instance.healthy = healthy;
+                    }
+                });
+    }
+
+    private static class Instance {
+        private final String address;
+        private final String host;
+        private final int port;
+        private final AtomicInteger outstanding = new AtomicInteger();
+        private volatile boolean healthy = true;
+
+        Instance(String address) {
+            int separator = address.lastIndexOf(':');
+            if (separator < 1) {
+                throw new IllegalArgumentException("Invalid instance address, expected host:port: " + address);
+            }
+            this.address = address;
+            this.host = address.substring(0, separator);
+            this.port = Integer.parseInt(address.substring(separator + 1));
+        }
+    }
+}
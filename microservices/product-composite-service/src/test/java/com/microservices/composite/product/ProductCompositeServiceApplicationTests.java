@@ -1,13 +1,518 @@
 package com.microservices.composite.product;
 
+import com.microservices.api.composite.product.ProductAggregate;
+import com.microservices.api.composite.product.ProductCompositeService;
+import com.microservices.api.composite.product.ProductImportResult;
+import com.microservices.api.composite.product.RecommendationSummary;
+import com.microservices.api.composite.product.ReviewSummary;
+import com.microservices.api.core.product.Product;
+import com.microservices.api.core.recommendation.RatingStats;
+import com.microservices.api.core.recommendation.Recommendation;
+import com.microservices.api.core.review.Review;
+import com.microservices.api.exception.InvalidInputException;
+import com.microservices.api.exception.NotFoundException;
+import com.microservices.api.exception.ServiceUnavailableException;
+import com.microservices.composite.product.services.ProductCompositeIntegration;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.metrics.AutoConfigureMetrics;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
 
-@SpringBootTest
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
+import static org.springframework.http.HttpStatus.*;
+import static org.springframework.http.MediaType.APPLICATION_JSON;
+import static org.springframework.http.MediaType.APPLICATION_NDJSON;
+
+@SpringBootTest(webEnvironment = RANDOM_PORT, properties = {
+		"app.recommendation-service.timeout=200ms",
+		"app.review-service.timeout=200ms",
+		"app.product-composite.import.batch-size=2",
+		"spring.sleuth.sampler.probability=1.0"})
+@AutoConfigureMetrics
 class ProductCompositeServiceApplicationTests {
 
+	private static final int PRODUCT_ID_OK = 1;
+	private static final int PRODUCT_ID_NOT_FOUND = 2;
+	private static final int PRODUCT_ID_INVALID = 3;
+	private static final int PRODUCT_ID_SLOW_REVIEWS = 4;
+	private static final int PRODUCT_ID_CACHED = 5;
+	private static final int PRODUCT_ID_PARTIAL = 6;
+	private static final int PRODUCT_ID_PROJECTED = 7;
+	private static final int PRODUCT_ID_TOP_N = 8;
+	private static final int PRODUCT_ID_UNAVAILABLE = 9;
+	private static final int PRODUCT_ID_DELETED_DURING_FETCH = 10;
+
+	private static final int SUMMARY_LIMIT = 10;
+
+	@Autowired
+	private WebTestClient client;
+
+	@Autowired
+	private ProductCompositeService compositeService;
+
+	@MockBean
+	private ProductCompositeIntegration integration;
+
+	@BeforeEach
+	void setUp() {
+		when(integration.getRecommendations(anyInt(), any(), any(), any())).thenReturn(Flux.empty());
+		when(integration.getReviews(anyInt(), any(), any(), any())).thenReturn(Flux.empty());
+
+		when(integration.getRatingStats(anyInt()))
+				.thenAnswer(invocation -> Mono.just(RatingStats.empty(invocation.getArgument(0))));
+		when(integration.getRatingStats(PRODUCT_ID_OK))
+				.thenReturn(Mono.just(new RatingStats(PRODUCT_ID_OK, 2, 7, Map.of(3, 1L, 4, 1L))));
+
+		when(integration.getProduct(PRODUCT_ID_OK))
+				.thenReturn(Mono.just(new Product(PRODUCT_ID_OK, "name", 1, "mock-address")));
+		when(integration.getRecommendations(eq(PRODUCT_ID_OK), any(), any(), any()))
+				.thenReturn(Flux.just(new Recommendation(PRODUCT_ID_OK, 1, "author", 1, "content", "mock address")));
+		when(integration.getReviews(eq(PRODUCT_ID_OK), any(), any(), any()))
+				.thenReturn(Flux.just(new Review(PRODUCT_ID_OK, 1, "author", "subject", "content", "mock address")));
+
+		when(integration.getProduct(PRODUCT_ID_NOT_FOUND))
+				.thenReturn(Mono.error(new NotFoundException("NOT FOUND: " + PRODUCT_ID_NOT_FOUND)));
+
+		when(integration.getProduct(PRODUCT_ID_INVALID))
+				.thenReturn(Mono.error(new InvalidInputException("INVALID: " + PRODUCT_ID_INVALID)));
+
+		when(integration.getProduct(PRODUCT_ID_SLOW_REVIEWS))
+				.thenReturn(Mono.just(new Product(PRODUCT_ID_SLOW_REVIEWS, "name", 1, "mock-address")));
+		when(integration.getRecommendations(eq(PRODUCT_ID_SLOW_REVIEWS), any(), any(), any()))
+				.thenReturn(Flux.just(new Recommendation(PRODUCT_ID_SLOW_REVIEWS, 1, "author", 1, "content", "mock address")));
+		when(integration.getReviews(eq(PRODUCT_ID_SLOW_REVIEWS), any(), any(), any()))
+				.thenReturn(Flux.just(new Review(PRODUCT_ID_SLOW_REVIEWS, 1, "author", "subject", "content", "mock address"))
+						.delayElements(Duration.ofSeconds(1)));
+
+		when(integration.getProduct(PRODUCT_ID_PARTIAL))
+				.thenReturn(Mono.just(new Product(PRODUCT_ID_PARTIAL, "name", 1, "mock-address")));
+		when(integration.getReviews(eq(PRODUCT_ID_PARTIAL), any(), any(), any()))
+				.thenReturn(Flux.just(new Review(PRODUCT_ID_PARTIAL, 1, "author", "subject", "content", "mock address"))
+						.delayElements(Duration.ofSeconds(1)));
+
+		when(integration.getProduct(PRODUCT_ID_PROJECTED))
+				.thenReturn(Mono.just(new Product(PRODUCT_ID_PROJECTED, "name", 1, "mock-address")));
+		when(integration.getReviews(eq(PRODUCT_ID_PROJECTED), eq(List.of("author")), any(), any()))
+				.thenReturn(Flux.just(new Review(PRODUCT_ID_PROJECTED, 1, "author", null, null, "mock address")));
+
+		when(integration.getProduct(PRODUCT_ID_TOP_N))
+				.thenReturn(Mono.just(new Product(PRODUCT_ID_TOP_N, "name", 1, "mock-address")));
+
+		when(integration.getProduct(PRODUCT_ID_CACHED))
+				.thenReturn(Mono.just(new Product(PRODUCT_ID_CACHED, "name", 1, "mock-address")));
+
+		when(integration.getProducts(anyList()))
+				.thenReturn(Flux.just(
+						new Product(PRODUCT_ID_OK, "name", 1, "mock-address"),
+						new Product(PRODUCT_ID_CACHED, "name", 1, "mock-address")));
+		when(integration.getRecommendationsForProducts(anyList(), any()))
+				.thenReturn(Flux.just(new Recommendation(PRODUCT_ID_OK, 1, "author", 1, "content", "mock address")));
+		when(integration.getRatingStatsForProducts(anyList()))
+				.thenReturn(Flux.just(new RatingStats(PRODUCT_ID_OK, 2, 7, Map.of(3, 1L, 4, 1L))));
+		when(integration.getReviewsForProducts(anyList(), any()))
+				.thenReturn(Flux.just(
+						new Review(PRODUCT_ID_CACHED, 1, "author", "subject", "content", "mock address"),
+						new Review(PRODUCT_ID_CACHED, 2, "author", "subject", "content", "mock address")));
+
+		when(integration.createProduct(any(), any()))
+				.thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+		when(integration.createProducts(anyList()))
+				.thenAnswer(invocation -> {
+					List<Product> products = invocation.getArgument(0);
+					if (products.stream().anyMatch(product -> product.getProductId() == PRODUCT_ID_UNAVAILABLE)) {
+						return Flux.error(new ServiceUnavailableException("Product service unavailable"));
+					}
+					return products.stream().anyMatch(product -> product.getProductId() == PRODUCT_ID_INVALID)
+							? Flux.error(new InvalidInputException("Duplicated key, Product Id: " + PRODUCT_ID_INVALID))
+							: Flux.fromIterable(products);
+				});
+		when(integration.createRecommendations(anyList()))
+				.thenAnswer(invocation -> Flux.fromIterable(invocation.<List<Recommendation>>getArgument(0)));
+		when(integration.createReviews(anyList()))
+				.thenAnswer(invocation -> Flux.fromIterable(invocation.<List<Review>>getArgument(0)));
+
+		when(integration.deleteProduct(anyInt())).thenReturn(Mono.empty());
+		when(integration.deleteRecommendation(anyInt())).thenReturn(Mono.empty());
+		when(integration.deleteReview(anyInt())).thenReturn(Mono.empty());
+	}
+
 	@Test
 	void contextLoads() {
 	}
 
+	@Test
+	void getProductById() {
+		getAndVerifyProduct(PRODUCT_ID_OK, OK)
+				.jsonPath("$.productId").isEqualTo(PRODUCT_ID_OK)
+				.jsonPath("$.recommendations.length()").isEqualTo(1)
+				.jsonPath("$.reviews.length()").isEqualTo(1)
+				.jsonPath("$.ratings.count").isEqualTo(2)
+				.jsonPath("$.ratings.average").isEqualTo(3.5)
+				.jsonPath("$.ratings.histogram['4']").isEqualTo(1);
+	}
+
+	@Test
+	void getProductNotFound() {
+		getAndVerifyProduct(PRODUCT_ID_NOT_FOUND, NOT_FOUND)
+				.jsonPath("$.path").isEqualTo("/product-composite/" + PRODUCT_ID_NOT_FOUND)
+				.jsonPath("$.message").isEqualTo("NOT FOUND: " + PRODUCT_ID_NOT_FOUND);
+	}
+
+	@Test
+	void getProductInvalidInput() {
+		getAndVerifyProduct(PRODUCT_ID_INVALID, UNPROCESSABLE_ENTITY)
+				.jsonPath("$.path").isEqualTo("/product-composite/" + PRODUCT_ID_INVALID)
+				.jsonPath("$.message").isEqualTo("INVALID: " + PRODUCT_ID_INVALID);
+	}
+
+	@Test
+	void getProductWithSlowReviews() {
+		getAndVerifyProduct(PRODUCT_ID_SLOW_REVIEWS, OK)
+				.jsonPath("$.productId").isEqualTo(PRODUCT_ID_SLOW_REVIEWS)
+				.jsonPath("$.recommendations.length()").isEqualTo(1)
+				.jsonPath("$.reviews.length()").isEqualTo(0);
+	}
+
+	@Test
+	void getProductWithinLatencyBudget() {
+		client.get()
+				.uri("/product-composite/" + PRODUCT_ID_PARTIAL)
+				.header("X-Latency-Budget", "100")
+				.accept(APPLICATION_JSON)
+				.exchange()
+				.expectStatus().isEqualTo(OK)
+				.expectBody()
+				.jsonPath("$.productId").isEqualTo(PRODUCT_ID_PARTIAL)
+				.jsonPath("$.recommendations.length()").isEqualTo(0)
+				.jsonPath("$.reviews").doesNotExist()
+				.jsonPath("$.missingSections").isEqualTo("reviews");
+
+		getAndVerifyProduct(PRODUCT_ID_PARTIAL, OK)
+				.jsonPath("$.reviews.length()").isEqualTo(0)
+				.jsonPath("$.missingSections.length()").isEqualTo(0);
+		verify(integration, times(2)).getProduct(PRODUCT_ID_PARTIAL);
+	}
+
+	@Test
+	void getProductInvalidLatencyBudget() {
+		client.get()
+				.uri("/product-composite/" + PRODUCT_ID_OK)
+				.header("X-Latency-Budget", "0")
+				.accept(APPLICATION_JSON)
+				.exchange()
+				.expectStatus().isEqualTo(UNPROCESSABLE_ENTITY)
+				.expectBody()
+				.jsonPath("$.message").isEqualTo("Invalid latency budget: 0 ms");
+	}
+
+	@Test
+	void getProductWithSelectedSectionsAndFields() {
+		client.get()
+				.uri("/product-composite/" + PRODUCT_ID_PROJECTED + "?include=reviews&fields=author")
+				.accept(APPLICATION_JSON)
+				.exchange()
+				.expectStatus().isEqualTo(OK)
+				.expectBody()
+				.jsonPath("$.productId").isEqualTo(PRODUCT_ID_PROJECTED)
+				.jsonPath("$.recommendations").doesNotExist()
+				.jsonPath("$.reviews.length()").isEqualTo(1)
+				.jsonPath("$.reviews[0].author").isEqualTo("author")
+				.jsonPath("$.reviews[0].subject").doesNotExist()
+				.jsonPath("$.missingSections.length()").isEqualTo(0);
+
+		verify(integration, never()).getRecommendations(eq(PRODUCT_ID_PROJECTED), any(), any(), any());
+		verify(integration).getReviews(eq(PRODUCT_ID_PROJECTED), eq(List.of("author")), any(), any());
+		verify(integration, never()).getReviews(eq(PRODUCT_ID_PROJECTED), isNull(), any(), any());
+	}
+
+	@Test
+	void getProductFetchesTopSummariesOnly() {
+		getAndVerifyProduct(PRODUCT_ID_TOP_N, OK).jsonPath("$.productId").isEqualTo(PRODUCT_ID_TOP_N);
+
+		verify(integration).getRecommendations(eq(PRODUCT_ID_TOP_N), isNull(), eq(SUMMARY_LIMIT), isNull());
+		verify(integration).getReviews(eq(PRODUCT_ID_TOP_N), isNull(), eq(SUMMARY_LIMIT), isNull());
+	}
+
+	@Test
+	void getProductInvalidField() {
+		client.get()
+				.uri("/product-composite/" + PRODUCT_ID_OK + "?fields=rate")
+				.accept(APPLICATION_JSON)
+				.exchange()
+				.expectStatus().isEqualTo(UNPROCESSABLE_ENTITY)
+				.expectBody()
+				.jsonPath("$.message").isEqualTo("Invalid field: rate");
+	}
+
+	@Test
+	void getProductIsCachedUntilDeleted() {
+		getAndVerifyProduct(PRODUCT_ID_CACHED, OK).jsonPath("$.productId").isEqualTo(PRODUCT_ID_CACHED);
+		getAndVerifyProduct(PRODUCT_ID_CACHED, OK).jsonPath("$.productId").isEqualTo(PRODUCT_ID_CACHED);
+		verify(integration, times(1)).getProduct(PRODUCT_ID_CACHED);
+
+		client.delete()
+				.uri("/product-composite/" + PRODUCT_ID_CACHED)
+				.exchange()
+				.expectStatus().isEqualTo(OK);
+
+		getAndVerifyProduct(PRODUCT_ID_CACHED, OK).jsonPath("$.productId").isEqualTo(PRODUCT_ID_CACHED);
+		verify(integration, times(2)).getProduct(PRODUCT_ID_CACHED);
+	}
+
+	@Test
+	void fetchStartedBeforeADeleteIsNotJoinedOrCached() throws Exception {
+		Sinks.One<Product> productBeforeDelete = Sinks.one();
+		when(integration.getProduct(PRODUCT_ID_DELETED_DURING_FETCH))
+				.thenReturn(productBeforeDelete.asMono())
+				.thenReturn(Mono.just(new Product(PRODUCT_ID_DELETED_DURING_FETCH, "after delete", 1, "mock-address")));
+
+		Disposable beforeDelete = compositeService.getProduct(PRODUCT_ID_DELETED_DURING_FETCH, null, null, null)
+				.subscribe(aggregate -> {}, error -> {});
+		client.delete()
+				.uri("/product-composite/" + PRODUCT_ID_DELETED_DURING_FETCH)
+				.exchange()
+				.expectStatus().isEqualTo(OK);
+		CompletableFuture<ProductAggregate> afterDelete = compositeService.getProduct(PRODUCT_ID_DELETED_DURING_FETCH, null, null, null).toFuture();
+		productBeforeDelete.tryEmitValue(new Product(PRODUCT_ID_DELETED_DURING_FETCH, "before delete", 1, "mock-address"));
+
+		beforeDelete.dispose();
+
+		assertEquals("after delete", afterDelete.get(5, TimeUnit.SECONDS).getName());
+		assertEquals("after delete", compositeService.getProduct(PRODUCT_ID_DELETED_DURING_FETCH, null, null, null).block().getName());
+		verify(integration, times(2)).getProduct(PRODUCT_ID_DELETED_DURING_FETCH);
+	}
+
+	@Test
+	void getProductsByIds() {
+		client.get()
+				.uri("/product-composite?productIds=" + PRODUCT_ID_CACHED + "," + PRODUCT_ID_NOT_FOUND + "," + PRODUCT_ID_OK)
+				.accept(APPLICATION_JSON)
+				.exchange()
+				.expectStatus().isEqualTo(OK)
+				.expectHeader().contentType(APPLICATION_JSON)
+				.expectBody()
+				.jsonPath("$.length()").isEqualTo(2)
+				.jsonPath("$[0].productId").isEqualTo(PRODUCT_ID_CACHED)
+				.jsonPath("$[0].recommendations.length()").isEqualTo(0)
+				.jsonPath("$[0].reviews.length()").isEqualTo(2)
+				.jsonPath("$[0].ratings.count").isEqualTo(0)
+				.jsonPath("$[1].productId").isEqualTo(PRODUCT_ID_OK)
+				.jsonPath("$[1].recommendations.length()").isEqualTo(1)
+				.jsonPath("$[1].reviews.length()").isEqualTo(0)
+				.jsonPath("$[1].ratings.average").isEqualTo(3.5);
+
+		verify(integration).getRecommendationsForProducts(anyList(), eq(SUMMARY_LIMIT));
+		verify(integration).getReviewsForProducts(anyList(), eq(SUMMARY_LIMIT));
+	}
+
+	@Test
+	void getProductsTooManyIds() {
+		String productIds = IntStream.rangeClosed(1, 201).mapToObj(String::valueOf).collect(Collectors.joining(","));
+
+		client.get()
+				.uri("/product-composite?productIds=" + productIds)
+				.accept(APPLICATION_JSON)
+				.exchange()
+				.expectStatus().isEqualTo(UNPROCESSABLE_ENTITY)
+				.expectBody()
+				.jsonPath("$.message").isEqualTo("Invalid number of productIds: 201, expected 1 to 200");
+	}
+
+	@Test
+	void createCompositeProduct() {
+		ProductAggregate compositeProduct = new ProductAggregate(PRODUCT_ID_OK, "name", 1,
+				List.of(new RecommendationSummary(1, "a", 1, "c"), new RecommendationSummary(2, "a", 2, "c")),
+				List.of(new ReviewSummary(1, "a", "s", "c"), new ReviewSummary(2, "a", "s", "c")), null);
+
+		client.post()
+				.uri("/product-composite")
+				.body(Mono.just(compositeProduct), ProductAggregate.class)
+				.exchange()
+				.expectStatus().isEqualTo(OK);
+
+		String idempotencyKey = "product-composite:" + PRODUCT_ID_OK + ":v-0-mIQH2uShv5DITuLobs2b9J3bPQhMkdK07TN99ko";
+		verify(integration).createProduct(argThat(product -> product.getProductId() == PRODUCT_ID_OK), eq(idempotencyKey));
+		verify(integration).createRecommendations(argThat(recommendations -> recommendations.size() == 2));
+		verify(integration).createReviews(argThat(reviews -> reviews.size() == 2));
+	}
+
+	@Test
+	void createCompositeProductForwardsIdempotencyKey() {
+		ProductAggregate compositeProduct = new ProductAggregate(PRODUCT_ID_OK, "name", 1,
+				Collections.emptyList(), Collections.emptyList(), null);
+
+		client.post()
+				.uri("/product-composite")
+				.header("Idempotency-Key", "client-key")
+				.body(Mono.just(compositeProduct), ProductAggregate.class)
+				.exchange()
+				.expectStatus().isEqualTo(OK);
+
+		verify(integration).createProduct(argThat(product -> product.getProductId() == PRODUCT_ID_OK), eq("client-key"));
+	}
+
+	@Test
+	void importCompositeProducts() {
+		String records = Stream.of(PRODUCT_ID_OK, PRODUCT_ID_INVALID, PRODUCT_ID_CACHED)
+				.map(productId -> "{\"productId\":" + productId + ",\"name\":\"name\",\"weight\":1," +
+						"\"recommendations\":[{\"recommendationId\":1,\"author\":\"a\",\"rate\":1,\"content\":\"c\"}]}\n")
+				.collect(Collectors.joining());
+
+		List<ProductImportResult> results = client.post()
+				.uri("/product-composite/import")
+				.contentType(APPLICATION_NDJSON)
+				.accept(APPLICATION_NDJSON)
+				.bodyValue(records)
+				.exchange()
+				.expectStatus().isEqualTo(OK)
+				.returnResult(ProductImportResult.class)
+				.getResponseBody()
+				.collectList()
+				.block(Duration.ofSeconds(5));
+
+		assertEquals(3, results.size());
+		assertEquals(PRODUCT_ID_OK, results.get(0).getProductId());
+		assertTrue(results.get(0).isImported());
+		assertEquals(PRODUCT_ID_INVALID, results.get(1).getProductId());
+		assertFalse(results.get(1).isImported());
+		assertEquals("Duplicated key, Product Id: " + PRODUCT_ID_INVALID, results.get(1).getMessage());
+		assertEquals(PRODUCT_ID_CACHED, results.get(2).getProductId());
+		assertTrue(results.get(2).isImported());
+
+		verify(integration, times(4)).createProducts(anyList());
+		verify(integration, times(2)).createRecommendations(anyList());
+		verify(integration, never()).createReviews(anyList());
+	}
+
+	@Test
+	void importIsNotRetriedRecordByRecordWhenTheProductServiceIsUnavailable() {
+		String records = Stream.of(PRODUCT_ID_OK, PRODUCT_ID_UNAVAILABLE)
+				.map(productId -> "{\"productId\":" + productId + ",\"name\":\"name\",\"weight\":1}\n")
+				.collect(Collectors.joining());
+
+		List<ProductImportResult> results = client.post()
+				.uri("/product-composite/import")
+				.contentType(APPLICATION_NDJSON)
+				.accept(APPLICATION_NDJSON)
+				.bodyValue(records)
+				.exchange()
+				.expectStatus().isEqualTo(OK)
+				.returnResult(ProductImportResult.class)
+				.getResponseBody()
+				.collectList()
+				.block(Duration.ofSeconds(5));
+
+		assertEquals(2, results.size());
+		assertFalse(results.get(0).isImported());
+		assertEquals("Product service unavailable", results.get(0).getMessage());
+		assertFalse(results.get(1).isImported());
+
+		verify(integration, times(1)).createProducts(anyList());
+		verify(integration, never()).createRecommendations(anyList());
+	}
+
+	@Test
+	void circuitBreakersAreExposedOnActuator() {
+		client.get()
+				.uri("/actuator/health")
+				.accept(APPLICATION_JSON)
+				.exchange()
+				.expectStatus().isEqualTo(OK)
+				.expectBody()
+				.jsonPath("$.components.circuitBreakers.details.product.details.state").isEqualTo("CLOSED")
+				.jsonPath("$.components.circuitBreakers.details.recommendation.details.state").isEqualTo("CLOSED")
+				.jsonPath("$.components.circuitBreakers.details.review.details.state").isEqualTo("CLOSED");
+	}
+
+	@Test
+	void latencyHistogramsAreExposedOnPrometheus() {
+		client.get()
+				.uri("/product-composite?productIds=" + PRODUCT_ID_OK)
+				.accept(APPLICATION_JSON)
+				.exchange()
+				.expectStatus().isEqualTo(OK);
+
+		client.get()
+				.uri("/actuator/prometheus")
+				.exchange()
+				.expectStatus().isEqualTo(OK)
+				.expectBody(String.class)
+				.value(metrics -> {
+					assertTrue(metrics.contains("composite_assembly_seconds_bucket{"));
+					assertTrue(metrics.contains("http_server_requests_seconds_bucket{"));
+				});
+	}
+
+	@Test
+	void productAggregateFetchIsTraced() {
+		client.get()
+				.uri("/product-composite/" + PRODUCT_ID_OK + "?include=ratings")
+				.accept(APPLICATION_JSON)
+				.exchange()
+				.expectStatus().isEqualTo(OK);
+
+		client.get()
+				.uri("/actuator/traces")
+				.exchange()
+				.expectStatus().isEqualTo(OK)
+				.expectBody(String.class)
+				.value(spans -> {
+					assertTrue(spans.contains("\"name\":\"product-aggregate\""));
+					assertTrue(spans.contains("\"product.id\":\"" + PRODUCT_ID_OK + "\""));
+				});
+	}
+
+	@Test
+	void deleteCompositeProduct() {
+		client.delete()
+				.uri("/product-composite/" + PRODUCT_ID_OK)
+				.exchange()
+				.expectStatus().isEqualTo(OK);
+
+		verify(integration).deleteProduct(PRODUCT_ID_OK);
+		verify(integration).deleteRecommendation(PRODUCT_ID_OK);
+		verify(integration).deleteReview(PRODUCT_ID_OK);
+	}
+
+	private WebTestClient.BodyContentSpec getAndVerifyProduct(int productId, HttpStatus expectedStatus) {
+		return client.get()
+				.uri("/product-composite/" + productId)
+				.accept(APPLICATION_JSON)
+				.exchange()
+				.expectStatus().isEqualTo(expectedStatus)
+				.expectHeader().contentType(APPLICATION_JSON)
+				.expectBody();
+	}
 }
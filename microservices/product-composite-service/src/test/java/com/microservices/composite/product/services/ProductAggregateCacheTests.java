@@ -0,0 +1,76 @@
+package com.microservices.composite.product.services;
+
+import com.microservices.api.composite.product.ProductAggregate;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProductAggregateCacheTests {
+
+    private final ProductAggregateCache cache = new ProductAggregateCache(new SimpleMeterRegistry(), 100, Duration.ofMinutes(1));
+
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @Test
+    void loadedProductsAreCached() {
+        cache.get(1, () -> load(1)).block();
+        cache.get(1, () -> load(1)).block();
+
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void invalidationOfAnotherProductDoesNotPreventCaching() {
+        Sinks.One<ProductAggregate> pending = Sinks.one();
+        Disposable inFlight = cache.get(1, pending::asMono).subscribe();
+
+        cache.invalidate(2);
+        pending.tryEmitValue(aggregate(1));
+        inFlight.dispose();
+
+        cache.get(1, () -> load(1)).block();
+        assertEquals(0, loads.get());
+    }
+
+    @Test
+    void invalidationDuringLoadPreventsCaching() {
+        Sinks.One<ProductAggregate> pending = Sinks.one();
+        Disposable inFlight = cache.get(1, pending::asMono).subscribe();
+
+        cache.invalidate(1);
+        pending.tryEmitValue(aggregate(1));
+        inFlight.dispose();
+
+        cache.get(1, () -> load(1)).block();
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void disabledCacheAlwaysLoads() {
+        ProductAggregateCache disabled = new ProductAggregateCache(new SimpleMeterRegistry(), 0, Duration.ofMinutes(1));
+
+        disabled.get(1, () -> load(1)).block();
+        disabled.get(1, () -> load(1)).block();
+
+        assertEquals(2, loads.get());
+    }
+
+    private Mono<ProductAggregate> load(int productId) {
+        return Mono.fromCallable(() -> {
+            loads.incrementAndGet();
+            return aggregate(productId);
+        });
+    }
+
+    private ProductAggregate aggregate(int productId) {
+        return new ProductAggregate(productId, "name", 1, Collections.emptyList(), Collections.emptyList(), null);
+    }
+}
@@ -0,0 +1,107 @@
+package com.microservices.composite.product.services;
+
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RequestCoalescerTests {
+
+    private final RequestCoalescer<Integer, String> coalescer = new RequestCoalescer<>("test");
+
+    private final AtomicInteger upstreamCalls = new AtomicInteger();
+
+    @Test
+    void concurrentCallsForSameKeyShareOneUpstreamCall() {
+        List<String> results = Flux.range(0, 10)
+                .flatMap(i -> coalescer.execute(1, () -> slowCall("value")))
+                .collectList()
+                .block();
+
+        assertEquals(10, results.size());
+        assertTrue(results.stream().allMatch("value"::equals));
+        assertEquals(1, upstreamCalls.get());
+        assertEquals(0, coalescer.inFlightCount());
+    }
+
+    @Test
+    void callsForDifferentKeysAreNotShared() {
+        Flux.merge(
+                coalescer.execute(1, () -> slowCall("a")),
+                coalescer.execute(2, () -> slowCall("b")))
+                .blockLast();
+
+        assertEquals(2, upstreamCalls.get());
+    }
+
+    @Test
+    void completedCallsAreNotReused() {
+        coalescer.execute(1, () -> slowCall("a")).block();
+        coalescer.execute(1, () -> slowCall("a")).block();
+
+        assertEquals(2, upstreamCalls.get());
+    }
+
+    @Test
+    void errorsAreSharedAndReleaseTheKey() {
+        Mono<String> failing = Mono.delay(Duration.ofMillis(50))
+                .doOnSubscribe(s -> upstreamCalls.incrementAndGet())
+                .then(Mono.error(new IllegalStateException("boom")));
+
+        List<Throwable> errors = Flux.range(0, 5)
+                .flatMap(i -> coalescer.execute(1, () -> failing)
+                        .map(v -> (Throwable) null)
+                        .onErrorResume(Mono::just))
+                .collectList()
+                .block();
+
+        assertEquals(5, errors.size());
+        assertTrue(errors.stream().allMatch(e -> e instanceof IllegalStateException));
+        assertEquals(1, upstreamCalls.get());
+        assertEquals(0, coalescer.inFlightCount());
+    }
+
+    @Test
+    void lateJoinersReceiveAllElements() {
+        Flux<String> stream = Flux.interval(Duration.ofMillis(50))
+                .take(3)
+                .map(i -> "e" + i)
+                .doOnSubscribe(s -> upstreamCalls.incrementAndGet());
+
+        Mono<List<String>> first = coalescer.executeMany(1, () -> stream).collectList();
+        Mono<List<String>> late = Mono.delay(Duration.ofMillis(75))
+                .then(coalescer.executeMany(1, () -> stream).collectList());
+
+        List<List<String>> results = Flux.merge(first, late).collectList().block();
+
+        assertEquals(List.of("e0", "e1", "e2"), results.get(0));
+        assertEquals(List.of("e0", "e1", "e2"), results.get(1));
+        assertEquals(1, upstreamCalls.get());
+    }
+
+    @Test
+    void callsArrivingAfterAReleaseStartANewCall() {
+        Mono<String> first = coalescer.execute(1, () -> slowCall("before"));
+        Mono<String> joined = coalescer.execute(1, () -> slowCall("before"));
+        Mono<String> afterRelease = Mono.fromRunnable(() -> coalescer.release(key -> key == 1))
+                .then(coalescer.execute(1, () -> slowCall("after")));
+
+        List<String> results = Flux.merge(first, joined, afterRelease).collectList().block();
+
+        assertEquals(2, results.stream().filter("before"::equals).count());
+        assertTrue(results.contains("after"));
+        assertEquals(2, upstreamCalls.get());
+        assertEquals(0, coalescer.inFlightCount());
+    }
+
+    private Mono<String> slowCall(String value) {
+        return Mono.delay(Duration.ofMillis(100))
+                .doOnSubscribe(s -> upstreamCalls.incrementAndGet())
+                .map(tick -> value);
+    }
+}
@@ -0,0 +1,96 @@
+package com.microservices.composite.product.services;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RequestHedgerTests {
+
+    private static final Duration HEDGE_DELAY = Duration.ofMillis(50);
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    private final AtomicInteger upstreamCalls = new AtomicInteger();
+
+    @Test
+    void slowCallIsHedgedAndFastestCallWins() {
+        RequestHedger hedger = hedger(true, 1.0);
+
+        String result = hedger.hedge("test", () -> firstCallIsSlow()).block(Duration.ofSeconds(1));
+
+        assertEquals("hedge", result);
+        assertEquals(2, upstreamCalls.get());
+        assertEquals(1, hedges("sent"));
+        assertEquals(1, hedges("won"));
+    }
+
+    @Test
+    void cancelledAndFailedCallsAreTimed() {
+        RequestHedger hedger = hedger(true, 1.0);
+
+        hedger.hedge("test", () -> firstCallIsSlow()).block(Duration.ofSeconds(1));
+        assertEquals(2, latencies());
+
+        assertThrows(IllegalStateException.class, () -> hedger.hedge("test", () -> Mono.error(new IllegalStateException())).block());
+        assertEquals(3, latencies());
+    }
+
+    @Test
+    void fastCallIsNotHedged() {
+        RequestHedger hedger = hedger(true, 1.0);
+
+        String result = hedger.hedge("test", () -> {
+            upstreamCalls.incrementAndGet();
+            return Mono.just("first");
+        }).block();
+
+        assertEquals("first", result);
+        assertEquals(1, upstreamCalls.get());
+        assertEquals(0, hedges("sent"));
+    }
+
+    @Test
+    void hedgesAreRejectedWhenTheHedgeRateIsUsedUp() {
+        RequestHedger hedger = hedger(true, 0.0);
+
+        String result = hedger.hedge("test", () -> firstCallIsSlow()).block(Duration.ofSeconds(1));
+
+        assertEquals("first", result);
+        assertEquals(1, upstreamCalls.get());
+        assertEquals(0, hedges("sent"));
+        assertEquals(1, hedges("rejected"));
+    }
+
+    @Test
+    void callsAreNotHedgedWhenHedgingIsDisabled() {
+        RequestHedger hedger = hedger(false, 1.0);
+
+        String result = hedger.hedge("test", () -> firstCallIsSlow()).block(Duration.ofSeconds(1));
+
+        assertEquals("first", result);
+        assertEquals(1, upstreamCalls.get());
+    }
+
+    private RequestHedger hedger(boolean enabled, double maxRate) {
+        return new RequestHedger(registry, enabled, 0.95, HEDGE_DELAY, HEDGE_DELAY, maxRate);
+    }
+
+    private Mono<String> firstCallIsSlow() {
+        return upstreamCalls.incrementAndGet() == 1
+                ? Mono.just("first").delayElement(Duration.ofMillis(300))
+                : Mono.just("hedge");
+    }
+
+    private long latencies() {
+        return registry.get("http.client.hedging.latency").tag("backend", "test").timer().count();
+    }
+
+    private double hedges(String outcome) {
+        return registry.get("http.client.hedges").tag("backend", "test").tag("outcome", outcome).counter().count();
+    }
+}
@@ -0,0 +1,135 @@
+package com.microservices.composite.product.services;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.http.server.HttpServer;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ServiceInstanceBalancerTests {
+
+    private static final Duration HEALTH_CHECK_INTERVAL = Duration.ofMillis(50);
+
+    private final List<DisposableServer> instances = new ArrayList<>();
+
+    private ServiceInstanceBalancer balancer;
+
+    @AfterEach
+    void tearDown() {
+        if (balancer != null) {
+            balancer.dispose();
+        }
+        instances.forEach(DisposableServer::disposeNow);
+    }
+
+    @Test
+    void requestsAreSpreadOverAllInstances() {
+        WebClient client = balancedClient(startInstance("a", true), startInstance("b", true));
+
+        Set<String> respondingInstances = Flux.range(0, 50)
+                .concatMap(i -> callInstance(client, "/name"))
+                .collect(Collectors.toSet())
+                .block();
+
+        assertEquals(Set.of("a", "b"), respondingInstances);
+    }
+
+    @Test
+    void unhealthyInstancesAreEjected() throws InterruptedException {
+        WebClient client = balancedClient(startInstance("a", true), startInstance("b", false));
+
+        Thread.sleep(HEALTH_CHECK_INTERVAL.multipliedBy(4).toMillis());
+
+        Set<String> respondingInstances = Flux.range(0, 20)
+                .concatMap(i -> callInstance(client, "/name"))
+                .collect(Collectors.toSet())
+                .block();
+
+        assertEquals(Set.of("a"), respondingInstances);
+        assertEquals(1, balancer.healthyInstances());
+    }
+
+    @Test
+    void stoppedInstancesAreEjected() {
+        DisposableServer stopped = startInstance("b", true);
+        WebClient client = balancedClient(startInstance("a", true), stopped);
+        stopped.disposeNow();
+
+        Set<String> respondingInstances = Flux.range(0, 20)
+                .concatMap(i -> callInstance(client, "/name").onErrorResume(ex -> Mono.empty()))
+                .collect(Collectors.toSet())
+                .block();
+
+        assertEquals(Set.of("a"), respondingInstances);
+    }
+
+    @Test
+    void requestsGoToTheLessBusyInstance() throws InterruptedException {
+        WebClient client = balancedClient(startInstance("a", true), startInstance("b", true));
+
+        Mono<String> busyInstance = callInstance(client, "/slow").cache();
+        busyInstance.subscribe();
+        Thread.sleep(50);
+
+        List<String> respondingInstances = Flux.range(0, 10)
+                .concatMap(i -> callInstance(client, "/name"))
+                .collectList()
+                .block();
+
+        String busy = busyInstance.block();
+        assertFalse(respondingInstances.contains(busy));
+    }
+
+    @Test
+    void slowResponsesDoNotEjectTheInstance() {
+        List<String> addresses = List.of("localhost:" + startInstance("a", true).port(), "localhost:" + startInstance("b", true).port());
+        balancer = new ServiceInstanceBalancer("test", addresses, WebClient.create(), Duration.ofMinutes(1), Duration.ofMillis(500));
+        WebClient client = WebClient.builder()
+                .clientConnector(new ReactorClientHttpConnector(HttpClient.create().responseTimeout(Duration.ofMillis(100))))
+                .filter(balancer)
+                .build();
+
+        assertThrows(WebClientRequestException.class, () -> callInstance(client, "/slow").block());
+
+        assertEquals(2, balancer.healthyInstances());
+    }
+
+    private WebClient balancedClient(DisposableServer... servers) {
+        List<String> addresses = new ArrayList<>();
+        for (DisposableServer server : servers) {
+            addresses.add("localhost:" + server.port());
+        }
+        balancer = new ServiceInstanceBalancer("test", addresses, WebClient.create(), HEALTH_CHECK_INTERVAL, Duration.ofMillis(500));
+        return WebClient.builder().filter(balancer).build();
+    }
+
+    private Mono<String> callInstance(WebClient client, String path) {
+        return client.get().uri("http://core-service" + path).retrieve().bodyToMono(String.class);
+    }
+
+    private DisposableServer startInstance(String name, boolean healthy) {
+        DisposableServer server = HttpServer.create()
+                .host("localhost")
+                .port(0)
+                .route(routes -> routes
+                        .get("/actuator/health", (request, response) -> response.status(healthy ? 200 : 503).send())
+                        .get("/name", (request, response) -> response.sendString(Mono.just(name)))
+                        .get("/slow", (request, response) -> response.sendString(Mono.just(name).delayElement(Duration.ofMillis(500)))))
+                .bindNow();
+        instances.add(server);
+        return server;
+    }
+}
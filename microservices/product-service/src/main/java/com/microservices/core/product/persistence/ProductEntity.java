@@ -27,6 +27,11 @@ public class ProductEntity {
 
     private int weight;
 
+    /**
+     * Key sent by the client that created the product, a create with the same key is a replay of that request.
+     */
+    private String idempotencyKey;
+
     public ProductEntity(int productId, String name, int weight) {
         this.productId = productId;
         this.name = name;
@@ -1,12 +1,19 @@
 package com.microservices.core.product.persistence;
 
-import org.springframework.data.repository.PagingAndSortingRepository;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
 import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
-import java.util.Optional;
+import java.util.Collection;
 
 @Repository
-public interface ProductRepository extends PagingAndSortingRepository<ProductEntity, String> {
+public interface ProductRepository extends ReactiveMongoRepository<ProductEntity, String>, ProductRepositoryCustom {
 
-    Optional<ProductEntity> findByProductId(int id);
+    Mono<ProductEntity> findByProductId(int id);
+
+    Flux<ProductEntity> findByProductIdIn(Collection<Integer> ids);
+
+    Flux<ProductEntity> findAllBy(Pageable pageable);
 }
@@ -0,0 +1,13 @@
+package com.microservices.core.product.persistence;
+
+import reactor.core.publisher.Mono;
+
+public interface ProductRepositoryCustom {
+
+    /**
+     * Inserts the product unless a product with the same productId already exists, using an upsert that only
+     * sets the fields on insert. An existing product is left untouched and no duplicate key error is raised.
+     * Emits true if the product was inserted, false if it already existed.
+     */
+    Mono<Boolean> insertIfAbsent(ProductEntity entity);
+}
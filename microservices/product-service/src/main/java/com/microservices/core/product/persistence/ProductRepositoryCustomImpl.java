@@ -0,0 +1,31 @@
+package com.microservices.core.product.persistence;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.data.mongodb.core.query.Update;
+import reactor.core.publisher.Mono;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+public class ProductRepositoryCustomImpl implements ProductRepositoryCustom {
+
+    private final ReactiveMongoOperations mongoOperations;
+
+    @Autowired
+    public ProductRepositoryCustomImpl(ReactiveMongoOperations mongoOperations) {
+        this.mongoOperations = mongoOperations;
+    }
+
+    @Override
+    public Mono<Boolean> insertIfAbsent(ProductEntity entity) {
+        Update update = new Update()
+                .setOnInsert("version", 0)
+                .setOnInsert("name", entity.getName())
+                .setOnInsert("weight", entity.getWeight())
+                .setOnInsert("idempotencyKey", entity.getIdempotencyKey());
+
+        return mongoOperations.upsert(query(where("productId").is(entity.getProductId())), update, ProductEntity.class)
+                .map(result -> result.getUpsertedId() != null);
+    }
+}
@@ -6,6 +6,8 @@ import org.mapstruct.Mapper;
 import org.mapstruct.Mapping;
 import org.mapstruct.Mappings;
 
+import java.util.List;
+
 @Mapper(componentModel = "spring")
 public interface ProductMapper {
 
@@ -14,7 +16,10 @@ public interface ProductMapper {
 
     @Mappings({
             @Mapping(target = "id", ignore = true),
-            @Mapping(target = "version", ignore = true)
+            @Mapping(target = "version", ignore = true),
+            @Mapping(target = "idempotencyKey", ignore = true)
     })
     ProductEntity apiToEntity(Product api);
+
+    List<ProductEntity> apiListToEntityList(List<Product> api);
 }
@@ -7,11 +7,24 @@ import com.microservices.api.exception.NotFoundException;
 import com.microservices.core.product.persistence.ProductEntity;
 import com.microservices.core.product.persistence.ProductRepository;
 import com.microservices.util.ServiceUtil;
+import com.microservices.util.TimedProxy;
+import com.microservices.util.TracedProxy;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.sleuth.CurrentTraceContext;
+import org.springframework.cloud.sleuth.Tracer;
 import org.springframework.dao.DuplicateKeyException;
 import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 @RestController
 public class ProductServiceImpl implements ProductService {
@@ -24,46 +37,115 @@ public class ProductServiceImpl implements ProductService {
 
     private final ProductRepository repository;
 
+    private final int batchMaxSize;
+
     @Autowired
-    public ProductServiceImpl(ServiceUtil serviceUtil, ProductMapper mapper, ProductRepository repository) {
+    public ProductServiceImpl(ServiceUtil serviceUtil, ProductMapper mapper, ProductRepository repository, MeterRegistry registry,
+                              Tracer tracer, CurrentTraceContext currentTraceContext,
+                              @Value("${app.batch.max-size}") int batchMaxSize) {
         this.serviceUtil = serviceUtil;
-        this.mapper = mapper;
-        this.repository = repository;
+        this.mapper = TimedProxy.wrap(ProductMapper.class, mapper, registry, "mapper.calls");
+        this.repository = TracedProxy.wrap(ProductRepository.class, repository, tracer, currentTraceContext);
+        this.batchMaxSize = batchMaxSize;
     }
 
 
     @Override
-    public Product getProduct(int productId) {
+    public Mono<Product> getProduct(int productId) {
         if (productId < 1) {
             throw new InvalidInputException("Invalid productId: "+productId);
         }
-        ProductEntity entity = repository.findByProductId(productId).orElseThrow(() ->
-            new NotFoundException("No product found for productId: " + productId));
+        return repository.findByProductId(productId)
+                .switchIfEmpty(Mono.error(() -> new NotFoundException("No product found for productId: " + productId)))
+                .map(entity -> {
+                    Product response = mapper.entityToApi(entity);
+                    response.setServiceAddress(serviceUtil.getServiceAddress());
 
-        Product response = mapper.entityToApi(entity);
-        response.setServiceAddress(serviceUtil.getServiceAddress());
-
-        LOG.debug("getProduct: found productId: {}", response.getProductId());
-        return response;
+                    LOG.debug("getProduct: found productId: {}", response.getProductId());
+                    return response;
+                });
     }
 
+    /**
+     * Returns the given products, unknown productIds are left out. At most {@code batchMaxSize} productIds are accepted.
+     */
     @Override
-    public Product createProduct(Product body) {
-        try {
-            ProductEntity entity = mapper.apiToEntity(body);
-            ProductEntity newEntity = repository.save(entity);
-
-            LOG.debug("createProduct: entity created for productId: {}", body.getProductId());
-            return mapper.entityToApi(newEntity);
-        } catch (DuplicateKeyException dke) {
-            throw new InvalidInputException("Duplicated key, Product Id: " + body.getProductId());
+    public Flux<Product> getProducts(List<Integer> productIds) {
+        if (productIds.isEmpty() || productIds.size() > batchMaxSize) {
+            throw new InvalidInputException("Invalid number of productIds: " + productIds.size() + ", expected 1 to " + batchMaxSize);
         }
+        productIds.forEach(productId -> {
+            if (productId < 1) {
+                throw new InvalidInputException("Invalid productId: " + productId);
+            }
+        });
+
+        return repository.findByProductIdIn(productIds)
+                .map(entity -> {
+                    Product response = mapper.entityToApi(entity);
+                    response.setServiceAddress(serviceUtil.getServiceAddress());
+                    return response;
+                })
+                .doOnComplete(() -> LOG.debug("getProducts: completed for productIds: {}", productIds));
     }
 
+    /**
+     * Creates the product with an insert-if-absent upsert, so an existing productId is detected without a
+     * duplicate key error. If the existing product was created with the same {@code Idempotency-Key}, the
+     * request is a replay and the stored product is returned without writing anything, otherwise it is
+     * rejected as a duplicate.
+     */
     @Override
-    public void deleteProduct(int productId) {
-        repository.findByProductId(productId).ifPresent(e ->
-                repository.delete(e));
+    public Mono<Product> createProduct(Product body, String idempotencyKey) {
+        ProductEntity entity = mapper.apiToEntity(body);
+        entity.setIdempotencyKey(idempotencyKey);
 
+        return repository.insertIfAbsent(entity)
+                .flatMap(inserted -> inserted
+                        ? Mono.just(entity).doOnNext(newEntity -> LOG.debug("createProduct: entity created for productId: {}", body.getProductId()))
+                        : repository.findByProductId(body.getProductId())
+                                .filter(existingEntity -> idempotencyKey != null && idempotencyKey.equals(existingEntity.getIdempotencyKey()))
+                                .doOnNext(existingEntity -> LOG.debug("createProduct: replayed create for productId: {}", body.getProductId()))
+                                .switchIfEmpty(Mono.error(() -> new InvalidInputException("Duplicated key, Product Id: " + body.getProductId()))))
+                .map(mapper::entityToApi);
+    }
+
+    /**
+     * Inserts all products with a single insertMany. Product ids that appear more than once in the batch or
+     * already exist are rejected up front, so a batch is normally either stored completely or not at all.
+     */
+    @Override
+    public Flux<Product> createProducts(List<Product> body) {
+        List<Integer> productIds = body.stream().map(Product::getProductId).collect(Collectors.toList());
+
+        Set<Integer> seenProductIds = new HashSet<>();
+        String repeatedProductIds = productIds.stream()
+                .filter(productId -> !seenProductIds.add(productId))
+                .distinct()
+                .map(String::valueOf)
+                .collect(Collectors.joining(","));
+        if (!repeatedProductIds.isEmpty()) {
+            throw new InvalidInputException("Duplicated key, Product Id: " + repeatedProductIds + ", more than once in the batch");
+        }
+
+        return repository.findByProductIdIn(productIds)
+                .map(entity -> String.valueOf(entity.getProductId()))
+                .collect(Collectors.joining(","))
+                .flatMapMany(existingProductIds -> {
+                    if (!existingProductIds.isEmpty()) {
+                        return Flux.error(new InvalidInputException("Duplicated key, Product Id: " + existingProductIds));
+                    }
+                    return repository.insert(mapper.apiListToEntityList(body))
+                            .onErrorMap(DuplicateKeyException.class, dke ->
+                                    new InvalidInputException("Duplicated key, in a batch of " + body.size() + " products"));
+                })
+                .map(mapper::entityToApi)
+                .doOnComplete(() -> LOG.debug("createProducts: entities created for {} products", body.size()));
+    }
+
+    @Override
+    public Mono<Void> deleteProduct(int productId) {
+        return repository.findByProductId(productId)
+                .flatMap(repository::delete);
     }
 }
@@ -9,12 +9,11 @@ import org.springframework.boot.autoconfigure.mongo.embedded.EmbeddedMongoAutoCo
 import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
 import org.springframework.dao.DuplicateKeyException;
 import org.springframework.dao.OptimisticLockingFailureException;
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import reactor.test.StepVerifier;
 
 import java.util.List;
-import java.util.Optional;
 import java.util.stream.Collectors;
 
 import static java.util.stream.IntStream.rangeClosed;
@@ -30,112 +29,112 @@ public class PersistenceTests extends MongoDBTestBase{
 
     @BeforeEach
     void setupDb() {
-        repository.deleteAll();
+        StepVerifier.create(repository.deleteAll()).verifyComplete();
 
         ProductEntity entity = new ProductEntity(1, "n", 1);
-        savedEntity = repository.save(entity);
-
-        assertEqualsProduct(entity, savedEntity);
+        StepVerifier.create(repository.save(entity))
+                .expectNextMatches(createdEntity -> {
+                    savedEntity = createdEntity;
+                    return areProductEqual(entity, savedEntity);
+                })
+                .verifyComplete();
     }
 
     @Test
     void create() {
         ProductEntity newEntity = new ProductEntity(2, "n", 2);
-        System.out.println(newEntity);
-        repository.save(newEntity);
-        System.out.println(newEntity);
 
-        ProductEntity foundEntity =
-                repository.findById(newEntity.getId()).get();
-        assertEqualsProduct(newEntity, foundEntity);
+        StepVerifier.create(repository.save(newEntity))
+                .expectNextMatches(createdEntity -> newEntity.getProductId() == createdEntity.getProductId())
+                .verifyComplete();
+
+        StepVerifier.create(repository.findById(newEntity.getId()))
+                .expectNextMatches(foundEntity -> areProductEqual(newEntity, foundEntity))
+                .verifyComplete();
 
-        assertEquals(2, repository.count());
+        StepVerifier.create(repository.count()).expectNext(2L).verifyComplete();
     }
 
     @Test
     void update() {
         savedEntity.setName("n2");
-        repository.save(savedEntity);
-
-        ProductEntity foundEntity = repository.findById(savedEntity.getId()).get();
-        assertEquals(1, (long)foundEntity.getVersion());
-        assertEquals("n2", foundEntity.getName());
+        StepVerifier.create(repository.save(savedEntity))
+                .expectNextMatches(updatedEntity -> updatedEntity.getName().equals("n2"))
+                .verifyComplete();
+
+        StepVerifier.create(repository.findById(savedEntity.getId()))
+                .expectNextMatches(foundEntity ->
+                        foundEntity.getVersion() == 1 &&
+                        foundEntity.getName().equals("n2"))
+                .verifyComplete();
     }
 
     @Test
     void delete() {
-        repository.delete(savedEntity);
-        assertFalse(repository.existsById(savedEntity.getId()));
+        StepVerifier.create(repository.delete(savedEntity)).verifyComplete();
+        StepVerifier.create(repository.existsById(savedEntity.getId())).expectNext(false).verifyComplete();
     }
 
     @Test
     void getByProductId() {
-        Optional<ProductEntity> entity = repository.findByProductId(savedEntity.getProductId());
-
-        assertTrue(entity.isPresent());
-        assertEqualsProduct(savedEntity, entity.get());
+        StepVerifier.create(repository.findByProductId(savedEntity.getProductId()))
+                .expectNextMatches(foundEntity -> areProductEqual(savedEntity, foundEntity))
+                .verifyComplete();
     }
 
     @Test
     void duplicateError() {
-        assertThrows( DuplicateKeyException.class, () -> {
-            ProductEntity entity = new ProductEntity(savedEntity.getProductId(), "n", 1);
-            System.out.println(entity);
-            System.out.println(repository.save(entity));
-            System.out.println("---");
-            Iterable<ProductEntity> all = repository.findAll();
-            all.forEach(System.out::println);
-
-        });
+        ProductEntity entity = new ProductEntity(savedEntity.getProductId(), "n", 1);
+        StepVerifier.create(repository.save(entity)).expectError(DuplicateKeyException.class).verify();
     }
 
     @Test
     void optimisticLockError() {
-        ProductEntity entity1 = repository.findById(savedEntity.getId()).get();
-        ProductEntity entity2 = repository.findById(savedEntity.getId()).get();
+        ProductEntity entity1 = repository.findById(savedEntity.getId()).block();
+        ProductEntity entity2 = repository.findById(savedEntity.getId()).block();
 
         entity1.setName("n2");
-        repository.save(entity1);
-
-        assertThrows(OptimisticLockingFailureException.class, () -> {
-            entity2.setName("n2");
-            repository.save(entity2);
-        });
+        repository.save(entity1).block();
 
-        ProductEntity entity = repository.findById(savedEntity.getId()).get();
-        assertEquals(1, entity.getVersion());
-        assertEquals("n2", entity.getName());
+        entity2.setName("n2");
+        StepVerifier.create(repository.save(entity2)).expectError(OptimisticLockingFailureException.class).verify();
 
+        StepVerifier.create(repository.findById(savedEntity.getId()))
+                .expectNextMatches(foundEntity ->
+                        foundEntity.getVersion() == 1 &&
+                        foundEntity.getName().equals("n2"))
+                .verifyComplete();
     }
 
     @Test
     void paging() {
 
-        repository.deleteAll();
+        StepVerifier.create(repository.deleteAll()).verifyComplete();
 
         List<ProductEntity> newProducts = rangeClosed(1001, 1010)
                 .mapToObj(i -> new ProductEntity(i, "name " + i, i))
                 .collect(Collectors.toList());
-        repository.saveAll(newProducts);
+        StepVerifier.create(repository.saveAll(newProducts)).expectNextCount(10).verifyComplete();
 
         Pageable nextPage = PageRequest.of(0, 4, ASC, "productId");
-        nextPage = testNextPage(nextPage, "[1001, 1002, 1003, 1004]", true);
-        nextPage = testNextPage(nextPage, "[1005, 1006, 1007, 1008]", true);
-        nextPage = testNextPage(nextPage, "[1009, 1010]", false);
+        nextPage = testNextPage(nextPage, "[1001, 1002, 1003, 1004]");
+        nextPage = testNextPage(nextPage, "[1005, 1006, 1007, 1008]");
+        nextPage = testNextPage(nextPage, "[1009, 1010]");
+        testNextPage(nextPage, "[]");
     }
 
-    private Pageable testNextPage(Pageable nextPage, String expectedProductIds, boolean expectsNextPage) {
-        Page<ProductEntity> productPage = repository.findAll(nextPage);
-        assertEquals(expectedProductIds, productPage.getContent().stream().map(p -> p.getProductId()).collect(Collectors.toList()).toString());
-        assertEquals(expectsNextPage, productPage.hasNext());
-        return productPage.nextPageable();
+    private Pageable testNextPage(Pageable nextPage, String expectedProductIds) {
+        List<ProductEntity> productPage = repository.findAllBy(nextPage).collectList().block();
+        assertEquals(expectedProductIds, productPage.stream().map(p -> p.getProductId()).collect(Collectors.toList()).toString());
+        return nextPage.next();
     }
 
-    private void assertEqualsProduct(ProductEntity expectedEntity, ProductEntity actualEntity) {
-        assertEquals(expectedEntity.getId(),                    actualEntity.getId());
-        assertEquals(expectedEntity.getVersion(),actualEntity.getVersion());
-        assertEquals(expectedEntity.getProductId(), actualEntity.getProductId());
-        assertEquals(expectedEntity.getName(), actualEntity.getName());
-        assertEquals(expectedEntity.getWeight(), actualEntity.getWeight());
+    private boolean areProductEqual(ProductEntity expectedEntity, ProductEntity actualEntity) {
+        return
+                (expectedEntity.getId().equals(actualEntity.getId())) &&
+                (expectedEntity.getVersion().equals(actualEntity.getVersion())) &&
+                (expectedEntity.getProductId() == actualEntity.getProductId()) &&
+                (expectedEntity.getName().equals(actualEntity.getName())) &&
+                (expectedEntity.getWeight() == actualEntity.getWeight());
     }
 }
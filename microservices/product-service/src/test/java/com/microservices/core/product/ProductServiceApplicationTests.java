@@ -12,8 +12,12 @@ import org.springframework.http.MediaType;
 import org.springframework.test.web.reactive.server.WebTestClient;
 import reactor.core.publisher.Mono;
 
-import static org.junit.Assert.assertFalse;
-import static org.junit.Assert.assertTrue;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.springframework.http.HttpStatus.*;
 import static org.springframework.http.MediaType.APPLICATION_JSON;
 
@@ -26,7 +30,7 @@ class ProductServiceApplicationTests extends MongoDBTestBase {
 
 	@BeforeEach
 	void setupDb () {
-		repository.deleteAll();
+		repository.deleteAll().block();
 	}
 
 	@Test
@@ -35,33 +39,78 @@ class ProductServiceApplicationTests extends MongoDBTestBase {
 
 		postAndVerifyProduct(productId, OK);
 
-		assertTrue(repository.findByProductId(productId).isPresent());
+		assertNotNull(repository.findByProductId(productId).block());
 
 		getAndVerifyProduct(productId, OK);
 	}
 
+	@Test
+	void getProductsByIds() {
+		postAndVerifyProduct(1, OK);
+		postAndVerifyProduct(2, OK);
+		postAndVerifyProduct(3, OK);
+
+		getAndVerifyProduct("?productIds=1,3,4", OK)
+				.jsonPath("$.length()").isEqualTo(2)
+				.jsonPath("$[0].productId").isEqualTo(1)
+				.jsonPath("$[1].productId").isEqualTo(3);
+	}
+
 	@Test
 	void duplicatedError() {
 		int productId = 1;
 
 		postAndVerifyProduct(productId, OK);
 
-		assertTrue(repository.findByProductId(productId).isPresent());
+		assertNotNull(repository.findByProductId(productId).block());
 
 		postAndVerifyProduct(productId, UNPROCESSABLE_ENTITY)
 				.jsonPath("$.path").isEqualTo("/product")
 				.jsonPath("$.message").isEqualTo("Duplicated key, Product Id: " + productId);
 	}
 
+	@Test
+	void replayedCreateIsANoOp() {
+		int productId = 1;
+
+		postAndVerifyProduct(productId, "key-1", OK)
+				.jsonPath("$.productId").isEqualTo(productId);
+		postAndVerifyProduct(productId, "key-1", OK)
+				.jsonPath("$.productId").isEqualTo(productId);
+
+		assertEquals(1, (long) repository.count().block());
+
+		postAndVerifyProduct(productId, "key-2", UNPROCESSABLE_ENTITY)
+				.jsonPath("$.message").isEqualTo("Duplicated key, Product Id: " + productId);
+	}
+
+	@Test
+	void createProductsInBatch() {
+		postAndVerifyProduct(2, OK);
+
+		postAndVerifyProducts(List.of(1, 3), OK)
+				.jsonPath("$.length()").isEqualTo(2)
+				.jsonPath("$[1].productId").isEqualTo(3);
+
+		postAndVerifyProducts(List.of(4, 2, 5), UNPROCESSABLE_ENTITY)
+				.jsonPath("$.path").isEqualTo("/product/batch")
+				.jsonPath("$.message").isEqualTo("Duplicated key, Product Id: 2");
+
+		postAndVerifyProducts(List.of(4, 5, 4), UNPROCESSABLE_ENTITY)
+				.jsonPath("$.message").isEqualTo("Duplicated key, Product Id: 4, more than once in the batch");
+
+		assertEquals(3, (long) repository.count().block());
+	}
+
 	@Test
 	void deleteProduct() {
 		int productId = 1;
 
 		postAndVerifyProduct(productId, OK);
-		assertTrue(repository.findByProductId(productId).isPresent());
+		assertNotNull(repository.findByProductId(productId).block());
 
 		deleteAndVerifyProduct(productId, OK);
-		assertFalse(repository.findByProductId(productId).isPresent());
+		assertNull(repository.findByProductId(productId).block());
 
 		deleteAndVerifyProduct(productId, OK);
 	}
@@ -117,12 +166,38 @@ class ProductServiceApplicationTests extends MongoDBTestBase {
 				.expectBody();
 	}
 
+	private WebTestClient.BodyContentSpec postAndVerifyProducts(
+			List<Integer> productIds, HttpStatus expectedStatus) {
+		List<Product> products = productIds.stream()
+				.map(productId -> new Product(productId, "Name" + productId, productId, "SA"))
+				.collect(Collectors.toList());
+
+		return client.post()
+				.uri("/product/batch")
+				.bodyValue(products)
+				.accept(APPLICATION_JSON)
+				.exchange()
+				.expectStatus().isEqualTo(expectedStatus)
+				.expectHeader().contentType(APPLICATION_JSON)
+				.expectBody();
+	}
+
 	private WebTestClient.BodyContentSpec postAndVerifyProduct(
 			int productId, HttpStatus expectedStatus) {
+		return postAndVerifyProduct(productId, null, expectedStatus);
+	}
+
+	private WebTestClient.BodyContentSpec postAndVerifyProduct(
+			int productId, String idempotencyKey, HttpStatus expectedStatus) {
 		Product product = new Product(productId, "Name" + productId, productId, "SA");
 
 		return client.post()
 				.uri("/product")
+				.headers(headers -> {
+					if (idempotencyKey != null) {
+						headers.set("Idempotency-Key", idempotencyKey);
+					}
+				})
 				.body(Mono.just(product), Product.class)
 				.accept(APPLICATION_JSON)
 				.exchange()
@@ -1,13 +1,41 @@
 package com.microservices.core.recommendation;
 
+import com.microservices.core.recommendation.persistence.RecommendationEntity;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mapping.context.MappingContext;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.data.mongodb.core.index.IndexResolver;
+import org.springframework.data.mongodb.core.index.MongoPersistentEntityIndexResolver;
+import org.springframework.data.mongodb.core.index.ReactiveIndexOperations;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentProperty;
 
 @SpringBootApplication
 @ComponentScan("com.microservices")
 public class RecommendationServiceApplication {
 
+	@Autowired
+	ReactiveMongoOperations mongoTemplate;
+
+	/**
+	 * The reactive template creates indexes lazily, so the unique indexes are ensured before the first request
+	 * is served to keep duplicate detection reliable right after startup.
+	 */
+	@EventListener(ContextRefreshedEvent.class)
+	public void initIndicesAfterStartup() {
+		MappingContext<? extends MongoPersistentEntity<?>, MongoPersistentProperty> mappingContext =
+				mongoTemplate.getConverter().getMappingContext();
+		IndexResolver resolver = new MongoPersistentEntityIndexResolver(mappingContext);
+
+		ReactiveIndexOperations indexOps = mongoTemplate.indexOps(RecommendationEntity.class);
+		resolver.resolveIndexFor(RecommendationEntity.class).forEach(e -> indexOps.ensureIndex(e).block());
+	}
+
 	public static void main(String[] args) {
 		SpringApplication.run(RecommendationServiceApplication.class, args);
 	}
@@ -0,0 +1,34 @@
+package com.microservices.core.recommendation.persistence;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.util.Map;
+
+/**
+ * Rating statistics of the recommendations of a product, one document per product. The histogram is keyed
+ * by the rating as a string, since MongoDB field names must be strings. The version is incremented by every
+ * update, so a rebuild can replace the statistics only if they have not changed since it started.
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Document(collection = "rating-stats")
+public class RatingStatsEntity {
+
+    @Id
+    private int productId;
+
+    private long count;
+
+    private long sum;
+
+    private Map<String, Long> histogram;
+
+    private long version;
+}
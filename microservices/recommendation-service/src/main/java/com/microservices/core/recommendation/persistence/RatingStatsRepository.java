@@ -0,0 +1,8 @@
+package com.microservices.core.recommendation.persistence;
+
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface RatingStatsRepository extends ReactiveMongoRepository<RatingStatsEntity, Integer>, RatingStatsRepositoryCustom {
+}
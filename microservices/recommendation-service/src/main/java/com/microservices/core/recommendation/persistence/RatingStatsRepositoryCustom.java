@@ -0,0 +1,25 @@
+package com.microservices.core.recommendation.persistence;
+
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+
+public interface RatingStatsRepositoryCustom {
+
+    /**
+     * Adds ratings to the statistics of a product with a single atomic upsert, so concurrent updates of the
+     * same product do not need to read the document first. {@code ratingCounts} holds the number of new
+     * recommendations per rating.
+     */
+    Mono<Void> addRatings(int productId, Map<Integer, Long> ratingCounts);
+
+    /**
+     * Recomputes the statistics of a product from its stored recommendations, reading only their ratings.
+     * Used when it is unknown which recommendations were stored, e.g. after a failed bulk insert.
+     * The recomputed statistics are written with a compare-and-set on the version of the statistics, and the
+     * rebuild is started over if a concurrent {@link #addRatings} changed them in the meantime, so no update is lost.
+     * A recommendation inserted while the rebuild reads the ratings, whose rating is added only after the rebuild
+     * has written, is still counted twice, until the next rebuild of the product.
+     */
+    Mono<Void> rebuild(int productId);
+}
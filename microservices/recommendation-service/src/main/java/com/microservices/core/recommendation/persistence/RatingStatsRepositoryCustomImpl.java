@@ -0,0 +1,105 @@
+package com.microservices.core.recommendation.persistence;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import reactor.core.publisher.Mono;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+public class RatingStatsRepositoryCustomImpl implements RatingStatsRepositoryCustom {
+
+    private static final int MAX_REBUILD_ATTEMPTS = 10;
+
+    private final ReactiveMongoOperations mongoOperations;
+
+    @Autowired
+    public RatingStatsRepositoryCustomImpl(ReactiveMongoOperations mongoOperations) {
+        this.mongoOperations = mongoOperations;
+    }
+
+    @Override
+    public Mono<Void> addRatings(int productId, Map<Integer, Long> ratingCounts) {
+        Update update = new Update();
+        long count = 0;
+        long sum = 0;
+        for (Map.Entry<Integer, Long> ratingCount : ratingCounts.entrySet()) {
+            count += ratingCount.getValue();
+            sum += ratingCount.getKey() * ratingCount.getValue();
+            update.inc("histogram." + ratingCount.getKey(), ratingCount.getValue());
+        }
+        update.inc("count", count).inc("sum", sum).inc("version", 1);
+
+        return mongoOperations.upsert(query(where("productId").is(productId)), update, RatingStatsEntity.class).then();
+    }
+
+    @Override
+    public Mono<Void> rebuild(int productId) {
+        return Mono.defer(() -> rebuildOnce(productId))
+                .filter(Boolean::booleanValue)
+                .repeatWhenEmpty(MAX_REBUILD_ATTEMPTS - 1, attempts -> attempts)
+                .onErrorMap(IllegalStateException.class, ex -> new OptimisticLockingFailureException(
+                        "Rating statistics of productId: " + productId + " kept changing during " + MAX_REBUILD_ATTEMPTS + " rebuilds", ex))
+                .then();
+    }
+
+    /**
+     * Emits true if the recomputed statistics were written, false if the statistics changed since they were read.
+     * Statistics stored before the version was introduced have no version, which is read as 0.
+     */
+    private Mono<Boolean> rebuildOnce(int productId) {
+        return mongoOperations.findById(productId, RatingStatsEntity.class)
+                .map(stats -> Optional.of(stats.getVersion()))
+                .defaultIfEmpty(Optional.empty())
+                .flatMap(version -> countRatings(productId).flatMap(stats -> write(stats, version)));
+    }
+
+    private Mono<RatingStatsEntity> countRatings(int productId) {
+        Query ratings = query(where("productId").is(productId));
+        ratings.fields().include("rating");
+
+        return mongoOperations.find(ratings, RecommendationEntity.class)
+                .reduceWith(() -> new RatingStatsEntity(productId, 0, 0, new HashMap<>(), 0), (stats, recommendation) -> {
+                    stats.setCount(stats.getCount() + 1);
+                    stats.setSum(stats.getSum() + recommendation.getRating());
+                    stats.getHistogram().merge(String.valueOf(recommendation.getRating()), 1L, Long::sum);
+                    return stats;
+                });
+    }
+
+    private Mono<Boolean> write(RatingStatsEntity stats, Optional<Long> readVersion) {
+        if (readVersion.isEmpty()) {
+            if (stats.getCount() == 0) {
+                return Mono.just(true);
+            }
+            return mongoOperations.insert(stats)
+                    .thenReturn(true)
+                    .onErrorResume(DuplicateKeyException.class, dke -> Mono.just(false));
+        }
+
+        Criteria sameVersion = readVersion.get() == 0
+                ? new Criteria().orOperator(where("version").is(0), where("version").exists(false))
+                : where("version").is(readVersion.get());
+        Query unchanged = query(new Criteria().andOperator(where("productId").is(stats.getProductId()), sameVersion));
+        if (stats.getCount() == 0) {
+            return mongoOperations.remove(unchanged, RatingStatsEntity.class)
+                    .map(result -> result.getDeletedCount() == 1);
+        }
+        Update replace = new Update()
+                .set("count", stats.getCount())
+                .set("sum", stats.getSum())
+                .set("histogram", stats.getHistogram())
+                .inc("version", 1);
+        return mongoOperations.updateFirst(unchanged, replace, RatingStatsEntity.class)
+                .map(result -> result.getMatchedCount() == 1);
+    }
+}
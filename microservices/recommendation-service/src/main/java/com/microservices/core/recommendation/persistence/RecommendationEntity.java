@@ -33,6 +33,11 @@ public class RecommendationEntity {
 
     private String content;
 
+    /**
+     * Key sent by the client that created the recommendation, a create with the same key is a replay of that request.
+     */
+    private String idempotencyKey;
+
 //    public RecommendationEntity() {
 //
 //    }
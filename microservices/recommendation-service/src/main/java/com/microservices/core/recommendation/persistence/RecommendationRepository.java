@@ -1,13 +1,14 @@
 package com.microservices.core.recommendation.persistence;
 
-import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
 import org.springframework.stereotype.Repository;
-
-import java.util.List;
-import java.util.Optional;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 @Repository
-public interface RecommendationRepository extends CrudRepository<RecommendationEntity, String> {
-    List<RecommendationEntity> findByProductId(int productId);
+public interface RecommendationRepository extends ReactiveMongoRepository<RecommendationEntity, String>, RecommendationRepositoryCustom {
+    Flux<RecommendationEntity> findByProductId(int productId);
+
+    Mono<RecommendationEntity> findByProductIdAndRecommendationId(int productId, int recommendationId);
 
 }
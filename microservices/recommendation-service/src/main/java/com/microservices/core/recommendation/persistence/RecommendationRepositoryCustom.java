@@ -0,0 +1,31 @@
+package com.microservices.core.recommendation.persistence;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+
+public interface RecommendationRepositoryCustom {
+
+    /**
+     * Finds a page of the recommendations of a product, ordered by recommendationId. The page starts after
+     * {@code afterRecommendationId}, if given, so the next page is found by passing the last recommendationId
+     * of the previous one, and the prod-rec-id index is used to seek to the start of the page.
+     * If {@code fields} is given, only the ids, the rating and these fields are read from the documents,
+     * fields that are not read are left null in the returned entities.
+     */
+    Flux<RecommendationEntity> findPageByProductId(int productId, Integer afterRecommendationId, int limit, Collection<String> fields);
+
+    /**
+     * Finds the first {@code limit} recommendations, by recommendationId, of each of the given products with a
+     * single aggregation. The recommendations are returned ordered by productId and recommendationId.
+     */
+    Flux<RecommendationEntity> findFirstPagesByProductIdIn(Collection<Integer> productIds, int limit);
+
+    /**
+     * Inserts the recommendation unless one with the same productId and recommendationId already exists, using
+     * an upsert that only sets the fields on insert. An existing recommendation is left untouched and no
+     * duplicate key error is raised. Emits true if the recommendation was inserted, false if it already existed.
+     */
+    Mono<Boolean> insertIfAbsent(RecommendationEntity entity);
+}
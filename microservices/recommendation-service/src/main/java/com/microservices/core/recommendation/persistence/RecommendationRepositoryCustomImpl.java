@@ -0,0 +1,81 @@
+package com.microservices.core.recommendation.persistence;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.ArrayOperators;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.group;
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.match;
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.newAggregation;
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.project;
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.replaceRoot;
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.sort;
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.unwind;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+public class RecommendationRepositoryCustomImpl implements RecommendationRepositoryCustom {
+
+    private final ReactiveMongoOperations mongoOperations;
+
+    @Autowired
+    public RecommendationRepositoryCustomImpl(ReactiveMongoOperations mongoOperations) {
+        this.mongoOperations = mongoOperations;
+    }
+
+    @Override
+    public Flux<RecommendationEntity> findPageByProductId(int productId, Integer afterRecommendationId, int limit, Collection<String> fields) {
+        Criteria criteria = where("productId").is(productId);
+        if (afterRecommendationId != null) {
+            criteria = criteria.and("recommendationId").gt(afterRecommendationId);
+        }
+
+        Query query = query(criteria)
+                .with(Sort.by("recommendationId"))
+                .limit(limit);
+        if (fields != null) {
+            query.fields().include("productId", "recommendationId", "rating");
+            fields.forEach(field -> query.fields().include(field));
+        }
+
+        return mongoOperations.find(query, RecommendationEntity.class);
+    }
+
+    @Override
+    public Flux<RecommendationEntity> findFirstPagesByProductIdIn(Collection<Integer> productIds, int limit) {
+        Aggregation aggregation = newAggregation(
+                match(where("productId").in(productIds)),
+                sort(Sort.by("productId", "recommendationId")),
+                group("productId").push(Aggregation.ROOT).as("recommendations"),
+                sort(Sort.by("_id")),
+                project().and(ArrayOperators.Slice.sliceArrayOf("recommendations").itemCount(limit)).as("recommendations"),
+                unwind("recommendations"),
+                replaceRoot("recommendations"));
+
+        return mongoOperations.aggregate(aggregation, RecommendationEntity.class, RecommendationEntity.class);
+    }
+
+    @Override
+    public Mono<Boolean> insertIfAbsent(RecommendationEntity entity) {
+        Query naturalKey = query(where("productId").is(entity.getProductId())
+                .and("recommendationId").is(entity.getRecommendationId()));
+        Update update = new Update()
+                .setOnInsert("version", 0)
+                .setOnInsert("author", entity.getAuthor())
+                .setOnInsert("rating", entity.getRating())
+                .setOnInsert("content", entity.getContent())
+                .setOnInsert("idempotencyKey", entity.getIdempotencyKey());
+
+        return mongoOperations.upsert(naturalKey, update, RecommendationEntity.class)
+                .map(result -> result.getUpsertedId() != null);
+    }
+}
@@ -1,12 +1,16 @@
 package com.microservices.core.recommendation.services;
 
+import com.microservices.api.core.recommendation.RatingStats;
 import com.microservices.api.core.recommendation.Recommendation;
+import com.microservices.core.recommendation.persistence.RatingStatsEntity;
 import com.microservices.core.recommendation.persistence.RecommendationEntity;
 import org.mapstruct.Mapper;
 import org.mapstruct.Mapping;
 import org.mapstruct.Mappings;
 
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 
 @Mapper(componentModel = "spring")
 public interface RecommendationMapper {
@@ -19,11 +23,18 @@ public interface RecommendationMapper {
     @Mappings({
             @Mapping(target = "rating", source = "api.rate"),
             @Mapping(target = "id", ignore = true),
-            @Mapping(target = "version", ignore = true)
+            @Mapping(target = "version", ignore = true),
+            @Mapping(target = "idempotencyKey", ignore = true)
     })
     RecommendationEntity apiToEntity(Recommendation api);
 
     List<Recommendation> entityListToApiList(List<RecommendationEntity> entity);
 
     List<RecommendationEntity> apiListToEntityList(List<Recommendation> api);
+
+    default RatingStats ratingStatsEntityToApi(RatingStatsEntity entity) {
+        Map<Integer, Long> histogram = entity.getHistogram() == null ? Map.of() : entity.getHistogram().entrySet().stream()
+                .collect(Collectors.toMap(entry -> Integer.valueOf(entry.getKey()), Map.Entry::getValue));
+        return new RatingStats(entity.getProductId(), entity.getCount(), entity.getSum(), histogram);
+    }
 }
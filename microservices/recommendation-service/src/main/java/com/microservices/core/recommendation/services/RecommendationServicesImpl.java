@@ -1,69 +1,281 @@
 package com.microservices.core.recommendation.services;
 
+import com.microservices.api.core.recommendation.RatingStats;
 import com.microservices.api.core.recommendation.Recommendation;
 import com.microservices.api.core.recommendation.RecommendationService;
 import com.microservices.api.exception.InvalidInputException;
+import com.microservices.core.recommendation.persistence.RatingStatsRepository;
 import com.microservices.core.recommendation.persistence.RecommendationEntity;
 import com.microservices.core.recommendation.persistence.RecommendationRepository;
 import com.microservices.util.ServiceUtil;
+import com.microservices.util.TimedProxy;
+import com.microservices.util.TracedProxy;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.sleuth.CurrentTraceContext;
+import org.springframework.cloud.sleuth.Tracer;
 import org.springframework.dao.DuplicateKeyException;
 import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
 
 @RestController
 public class RecommendationServicesImpl implements RecommendationService {
 
     private final Logger LOG = LoggerFactory.getLogger(RecommendationServicesImpl.class);
 
+    private static final Set<String> PROJECTABLE_FIELDS = Set.of("author", "content");
+
     private final RecommendationRepository repository;
 
+    private final RatingStatsRepository ratingStatsRepository;
+
     private final ServiceUtil serviceUtil;
 
     private final RecommendationMapper mapper;
 
+    private final int defaultPageSize;
+
+    private final int maxPageSize;
+
+    private final int batchMaxSize;
+
     @Autowired
-    public RecommendationServicesImpl(RecommendationRepository repository, ServiceUtil serviceUtil, RecommendationMapper mapper) {
-        this.repository = repository;
+    public RecommendationServicesImpl(RecommendationRepository repository, RatingStatsRepository ratingStatsRepository,
+                                      ServiceUtil serviceUtil, RecommendationMapper mapper, MeterRegistry registry,
+                                      Tracer tracer, CurrentTraceContext currentTraceContext,
+                                      @Value("${app.page.default-size}") int defaultPageSize,
+                                      @Value("${app.page.max-size}") int maxPageSize,
+                                      @Value("${app.batch.max-size}") int batchMaxSize) {
+        this.repository = TracedProxy.wrap(RecommendationRepository.class, repository, tracer, currentTraceContext);
+        this.ratingStatsRepository = TracedProxy.wrap(RatingStatsRepository.class, ratingStatsRepository, tracer, currentTraceContext);
         this.serviceUtil = serviceUtil;
-        this.mapper = mapper;
+        this.mapper = TimedProxy.wrap(RecommendationMapper.class, mapper, registry, "mapper.calls");
+        this.defaultPageSize = defaultPageSize;
+        this.maxPageSize = maxPageSize;
+        this.batchMaxSize = batchMaxSize;
     }
 
+    /**
+     * Returns one page of the recommendations of a product, ordered by recommendationId. A page holds at most
+     * {@code limit} recommendations, or the default page size, and starts after the recommendationId given in
+     * {@code after}, so the next page is requested with the last recommendationId of the current page.
+     * If {@code fields} is given, only the ids, the rate and the listed fields are read from the database
+     * and returned, the other fields are left out of the response.
+     */
     @Override
-    public List<Recommendation> getRecommendations(int productId) {
+    public Flux<Recommendation> getRecommendations(int productId, List<String> fields, Integer limit, Integer afterRecommendationId) {
         if (productId < 1) {
             throw new InvalidInputException("Invalid productId: " + productId);
         }
+        if (limit != null && (limit < 1 || limit > maxPageSize)) {
+            throw new InvalidInputException("Invalid limit: " + limit + ", expected 1 to " + maxPageSize);
+        }
+        if (fields != null) {
+            fields.forEach(field -> {
+                if (!PROJECTABLE_FIELDS.contains(field)) {
+                    throw new InvalidInputException("Invalid field: " + field);
+                }
+            });
+        }
 
-        List<RecommendationEntity> entityList = repository.findByProductId(productId);
-        List<Recommendation> list = mapper.entityListToApiList(entityList);
-        list.forEach(e -> e.setServiceAddress(serviceUtil.getServiceAddress()));
+        return repository.findPageByProductId(productId, afterRecommendationId, limit == null ? defaultPageSize : limit, fields)
+                .map(entity -> {
+                    Recommendation recommendation = mapper.entityToApi(entity);
+                    recommendation.setServiceAddress(serviceUtil.getServiceAddress());
+                    return recommendation;
+                })
+                .doOnComplete(() -> LOG.debug("getRecommendations: completed for productId: {}", productId));
+    }
 
-        LOG.debug("getRecommendations: response size: {}", list.size());
+    /**
+     * Returns the first page of the recommendations of each of the given products, at most {@code limit}
+     * recommendations per product, or the default page size, ordered by productId and recommendationId.
+     * All pages are read with a single aggregation, so a product with many recommendations adds no more than one
+     * page to the response. At most {@code batchMaxSize} productIds are accepted.
+     */
+    @Override
+    public Flux<Recommendation> getRecommendationsForProducts(List<Integer> productIds, Integer limit) {
+        validateProductIds(productIds);
+        if (limit != null && (limit < 1 || limit > maxPageSize)) {
+            throw new InvalidInputException("Invalid limit: " + limit + ", expected 1 to " + maxPageSize);
+        }
 
-        return list;
+        return repository.findFirstPagesByProductIdIn(productIds, limit == null ? defaultPageSize : limit)
+                .map(entity -> {
+                    Recommendation recommendation = mapper.entityToApi(entity);
+                    recommendation.setServiceAddress(serviceUtil.getServiceAddress());
+                    return recommendation;
+                })
+                .doOnComplete(() -> LOG.debug("getRecommendationsForProducts: completed for productIds: {}", productIds));
     }
 
+    /**
+     * Streams all recommendations of a product as they are read from the database cursor, without paging.
+     * The cursor is read on demand, so a slow client slows down the reading instead of filling up the memory.
+     */
     @Override
-    public Recommendation createRecommendation(Recommendation body) {
-        try {
-            RecommendationEntity entity = mapper.apiToEntity(body);
-            RecommendationEntity newEntity = repository.save(entity);
+    public Flux<Recommendation> streamRecommendations(int productId) {
+        if (productId < 1) {
+            throw new InvalidInputException("Invalid productId: " + productId);
+        }
 
-            LOG.debug("createRecommendation: created a recommendation entity: {}/{}", body.getProductId(), body.getRecommendationId());
-            return mapper.entityToApi(newEntity);
+        return repository.findByProductId(productId)
+                .map(entity -> {
+                    Recommendation recommendation = mapper.entityToApi(entity);
+                    recommendation.setServiceAddress(serviceUtil.getServiceAddress());
+                    return recommendation;
+                })
+                .doOnComplete(() -> LOG.debug("streamRecommendations: completed for productId: {}", productId));
+    }
 
-        } catch (DuplicateKeyException dke) {
-            throw new InvalidInputException("Duplicate key, Product Id: " + body.getProductId() + ", Recommendation Id:" + body.getRecommendationId());
+    @Override
+    public Mono<RatingStats> getRatingStats(int productId) {
+        if (productId < 1) {
+            throw new InvalidInputException("Invalid productId: " + productId);
         }
+
+        return ratingStatsRepository.findById(productId)
+                .map(mapper::ratingStatsEntityToApi)
+                .defaultIfEmpty(RatingStats.empty(productId));
+    }
+
+    /**
+     * Returns the rating statistics of the given products, products without any recommendation are left out.
+     */
+    @Override
+    public Flux<RatingStats> getRatingStatsForProducts(List<Integer> productIds) {
+        validateProductIds(productIds);
+
+        return ratingStatsRepository.findAllById(productIds)
+                .map(mapper::ratingStatsEntityToApi);
+    }
+
+    /**
+     * Stores the recommendation with an insert-if-absent upsert and adds its rating to the rating statistics of
+     * the product. An existing recommendation is detected without a duplicate key error: if it was created with
+     * the same {@code Idempotency-Key}, the request is a replay and the stored recommendation is returned without
+     * writing anything, in particular without counting its rating twice, otherwise it is rejected as a duplicate.
+     * The two writes are not atomic. If the call fails or is cancelled, e.g. by a timeout of the caller, before
+     * the rating has been added, the statistics of the product are recomputed from its stored recommendations.
+     */
+    @Override
+    public Mono<Recommendation> createRecommendation(Recommendation body, String idempotencyKey) {
+        RecommendationEntity entity = mapper.apiToEntity(body);
+        entity.setIdempotencyKey(idempotencyKey);
+
+        return Mono.defer(() -> {
+            AtomicBoolean ratingStatsUpToDate = new AtomicBoolean();
+            return repository.insertIfAbsent(entity)
+                    .flatMap(inserted -> {
+                        if (!inserted) {
+                            ratingStatsUpToDate.set(true);
+                            return repository.findByProductIdAndRecommendationId(body.getProductId(), body.getRecommendationId())
+                                    .filter(existingEntity -> idempotencyKey != null && idempotencyKey.equals(existingEntity.getIdempotencyKey()))
+                                    .doOnNext(existingEntity -> LOG.debug("createRecommendation: replayed create of recommendation: {}/{}", body.getProductId(), body.getRecommendationId()))
+                                    .switchIfEmpty(Mono.error(() -> new InvalidInputException("Duplicate key, Product Id: " + body.getProductId() + ", Recommendation Id:" + body.getRecommendationId())));
+                        }
+                        return ratingStatsRepository.addRatings(entity.getProductId(), Map.of(entity.getRating(), 1L))
+                                .doOnSuccess(v -> ratingStatsUpToDate.set(true))
+                                .thenReturn(entity)
+                                .doOnNext(newEntity -> LOG.debug("createRecommendation: created a recommendation entity: {}/{}", body.getProductId(), body.getRecommendationId()));
+                    })
+                    .onErrorResume(ex -> ratingStatsUpToDate.get()
+                            ? Mono.error(ex)
+                            : repairRatingStats(entity.getProductId()).then(Mono.error(ex)))
+                    .doOnCancel(() -> {
+                        if (!ratingStatsUpToDate.get()) {
+                            repairRatingStats(entity.getProductId()).subscribe();
+                        }
+                    });
+        })
+                .map(mapper::entityToApi);
+    }
+
+    /**
+     * Recomputes the statistics of a product after an interrupted create. A failure of the rebuild is only
+     * logged, so it does not replace the error of the create.
+     */
+    private Mono<Void> repairRatingStats(int productId) {
+        LOG.debug("Create interrupted for productId: {}, will rebuild its rating statistics", productId);
+        return ratingStatsRepository.rebuild(productId)
+                .onErrorResume(ex -> {
+                    LOG.warn("Failed to rebuild the rating statistics of productId: {}: {}", productId, ex.toString());
+                    return Mono.empty();
+                });
+    }
+
+    /**
+     * Stores all recommendations with a single bulk insert. A duplicate key fails the whole request with
+     * a 422, but recommendations preceding the duplicate in the list remain stored.
+     * The ratings are added to the rating statistics with one update per product. If the insert fails, it is
+     * unknown which recommendations were stored, so the statistics of the products in the batch are recomputed.
+     * They are recomputed as well if the call fails or is cancelled before all ratings have been added.
+     */
+    @Override
+    public Flux<Recommendation> createRecommendations(List<Recommendation> body) {
+        List<RecommendationEntity> entities = mapper.apiListToEntityList(body);
+
+        return Mono.defer(() -> {
+            AtomicBoolean ratingStatsUpToDate = new AtomicBoolean();
+            return repository.insert(entities)
+                    .collectList()
+                    .flatMap(newEntities -> addRatings(newEntities)
+                            .doOnSuccess(v -> ratingStatsUpToDate.set(true))
+                            .thenReturn(newEntities))
+                    .onErrorResume(ex -> {
+                        Mono<List<RecommendationEntity>> error = ex instanceof DuplicateKeyException
+                                ? Mono.error(new InvalidInputException("Duplicate key, Product Id: " + distinctProductIds(body) + ", in a batch of " + body.size() + " recommendations"))
+                                : Mono.error(ex);
+                        return ratingStatsUpToDate.get() ? error : repairRatingStats(entities).then(error);
+                    })
+                    .doOnCancel(() -> {
+                        if (!ratingStatsUpToDate.get()) {
+                            repairRatingStats(entities).subscribe();
+                        }
+                    });
+        })
+                .flatMapIterable(newEntities -> newEntities)
+                .map(mapper::entityToApi)
+                .doOnComplete(() -> LOG.debug("createRecommendations: created {} recommendation entities", body.size()));
+    }
+
+    private Mono<Void> addRatings(List<RecommendationEntity> entities) {
+        Map<Integer, Map<Integer, Long>> ratingCountsPerProduct = entities.stream()
+                .collect(Collectors.groupingBy(RecommendationEntity::getProductId,
+                        Collectors.groupingBy(RecommendationEntity::getRating, Collectors.counting())));
+
+        return Flux.fromIterable(ratingCountsPerProduct.entrySet())
+                .flatMap(ratingCounts -> ratingStatsRepository.addRatings(ratingCounts.getKey(), ratingCounts.getValue()))
+                .then();
+    }
+
+    private Mono<Void> repairRatingStats(List<RecommendationEntity> entities) {
+        return Flux.fromStream(entities.stream().map(RecommendationEntity::getProductId).distinct())
+                .concatMap(productId -> repairRatingStats(productId))
+                .then();
+    }
+
+    private String distinctProductIds(List<Recommendation> recommendations) {
+        return recommendations.stream()
+                .map(recommendation -> String.valueOf(recommendation.getProductId()))
+                .distinct()
+                .collect(Collectors.joining(","));
     }
 
     @Override
-    public void deleteRecommendation(int productId) {
+    public Mono<Void> deleteRecommendation(int productId) {
         LOG.debug("deleteRecommendations: tries to delete recommendations for the product with productId: {}", productId);
-        repository.deleteAll(repository.findByProductId(productId));
+        return repository.deleteAll(repository.findByProductId(productId))
+                .then(ratingStatsRepository.deleteById(productId));
     }
 }
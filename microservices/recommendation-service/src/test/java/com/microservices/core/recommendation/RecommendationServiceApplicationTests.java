@@ -1,19 +1,37 @@
 package com.microservices.core.recommendation;
 
 import com.microservices.api.core.recommendation.Recommendation;
+import com.microservices.api.core.recommendation.RecommendationService;
+import com.microservices.core.recommendation.persistence.RatingStatsRepository;
 import com.microservices.core.recommendation.persistence.RecommendationRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
 import org.springframework.http.HttpStatus;
 import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
 import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
+import static org.springframework.http.HttpStatus.INTERNAL_SERVER_ERROR;
 import static org.springframework.http.HttpStatus.OK;
 import static org.springframework.http.HttpStatus.UNPROCESSABLE_ENTITY;
 import static org.springframework.http.MediaType.APPLICATION_JSON;
+import static org.springframework.http.MediaType.APPLICATION_NDJSON;
 import static reactor.core.publisher.Mono.just;
 
 @SpringBootTest(webEnvironment = RANDOM_PORT)
@@ -25,9 +43,16 @@ class RecommendationServiceApplicationTests extends MongoDbTestBase{
 	@Autowired
 	private RecommendationRepository repository;
 
+	@SpyBean
+	private RatingStatsRepository ratingStatsRepository;
+
+	@Autowired
+	private RecommendationService recommendationService;
+
 	@BeforeEach
 	void setupDb() {
-		repository.deleteAll();
+		repository.deleteAll().block();
+		ratingStatsRepository.deleteAll().block();
 	}
 
 
@@ -45,13 +70,198 @@ class RecommendationServiceApplicationTests extends MongoDbTestBase{
 				.jsonPath("$.productId").isEqualTo(productId)
 				.jsonPath("$.recommendationId").isEqualTo(recommendationId);
 
-		assertEquals(1, repository.count());
+		assertEquals(1, (long) repository.count().block());
 
 		postAndVerifyRecommendation(productId, recommendationId, UNPROCESSABLE_ENTITY)
 				.jsonPath("$.path").isEqualTo("/recommendation")
 				.jsonPath("$.message").isEqualTo("Duplicate key, Product Id: 1, Recommendation Id:1");
 
-		assertEquals(1, repository.count());
+		assertEquals(1, (long) repository.count().block());
+	}
+
+	@Test
+	void replayedCreateIsANoOp() {
+
+		postAndVerifyRecommendation(1, 1, "key-1", OK)
+				.jsonPath("$.recommendationId").isEqualTo(1);
+		postAndVerifyRecommendation(1, 1, "key-1", OK)
+				.jsonPath("$.recommendationId").isEqualTo(1);
+
+		assertEquals(1, (long) repository.count().block());
+		getAndVerifyRatingStats("?productId=1", OK)
+				.jsonPath("$.count").isEqualTo(1);
+
+		postAndVerifyRecommendation(1, 1, "key-2", UNPROCESSABLE_ENTITY)
+				.jsonPath("$.message").isEqualTo("Duplicate key, Product Id: 1, Recommendation Id:1");
+	}
+
+	@Test
+	void ratingStatsAreRebuiltWhenAddingTheRatingFails() {
+		doReturn(Mono.error(new IllegalStateException("stats unavailable"))).when(ratingStatsRepository).addRatings(eq(1), anyMap());
+
+		postAndVerifyRecommendation(1, 1, INTERNAL_SERVER_ERROR);
+
+		verify(ratingStatsRepository).rebuild(1);
+		assertEquals(1, ratingStatsRepository.findById(1).block().getCount());
+	}
+
+	@Test
+	void ratingStatsAreRebuiltWhenTheCreateIsCancelled() {
+		doReturn(Mono.never()).when(ratingStatsRepository).addRatings(eq(1), anyMap());
+
+		StepVerifier.create(recommendationService.createRecommendation(new Recommendation(1, 1, "Author 1", 1, "Content 1", "SA"), null)
+						.timeout(Duration.ofSeconds(1)))
+				.verifyError(TimeoutException.class);
+
+		verify(ratingStatsRepository, timeout(5000)).rebuild(1);
+		StepVerifier.create(ratingStatsRepository.findById(1).repeatWhenEmpty(5, repeat -> repeat.delayElements(Duration.ofMillis(100))))
+				.expectNextMatches(stats -> stats.getCount() == 1)
+				.verifyComplete();
+	}
+
+	@Test
+	void ratingStatsAreRebuiltWhenABulkCreateIsCancelled() {
+		doReturn(Mono.never()).when(ratingStatsRepository).addRatings(eq(2), anyMap());
+
+		List<Recommendation> recommendations = List.of(
+				new Recommendation(1, 1, "Author 1", 1, "Content 1", "SA"),
+				new Recommendation(2, 1, "Author 1", 4, "Content 1", "SA"));
+		StepVerifier.create(recommendationService.createRecommendations(recommendations)
+						.timeout(Duration.ofSeconds(1)))
+				.verifyError(TimeoutException.class);
+
+		verify(ratingStatsRepository, timeout(5000)).rebuild(2);
+		StepVerifier.create(ratingStatsRepository.findById(2).repeatWhenEmpty(5, repeat -> repeat.delayElements(Duration.ofMillis(100))))
+				.expectNextMatches(stats -> stats.getCount() == 1 && stats.getSum() == 4)
+				.verifyComplete();
+	}
+
+	@Test
+	void getRecommendationsForProducts() {
+
+		postAndVerifyRecommendation(1, 1, OK);
+		postAndVerifyRecommendation(1, 2, OK);
+		postAndVerifyRecommendation(2, 1, OK);
+		postAndVerifyRecommendation(3, 1, OK);
+
+		getAndVerifyRecommendationsByProductId("?productIds=1,2", OK)
+				.jsonPath("$.length()").isEqualTo(3);
+
+		getAndVerifyRecommendationsByProductId("?productIds=1,2&limit=1", OK)
+				.jsonPath("$.length()").isEqualTo(2)
+				.jsonPath("$[0].productId").isEqualTo(1)
+				.jsonPath("$[0].recommendationId").isEqualTo(1)
+				.jsonPath("$[1].productId").isEqualTo(2);
+	}
+
+	@Test
+	void getRecommendationsForTooManyProducts() {
+		String productIds = IntStream.rangeClosed(1, 201).mapToObj(String::valueOf).collect(Collectors.joining(","));
+
+		getAndVerifyRecommendationsByProductId("?productIds=" + productIds, UNPROCESSABLE_ENTITY)
+				.jsonPath("$.message").isEqualTo("Invalid number of productIds: 201, expected 1 to 200");
+	}
+
+	@Test
+	void getRecommendationsWithFields() {
+
+		postAndVerifyRecommendation(1, 1, OK);
+
+		getAndVerifyRecommendationsByProductId("?productId=1&fields=author", OK)
+				.jsonPath("$.length()").isEqualTo(1)
+				.jsonPath("$[0].recommendationId").isEqualTo(1)
+				.jsonPath("$[0].rate").isEqualTo(1)
+				.jsonPath("$[0].author").isEqualTo("Author 1")
+				.jsonPath("$[0].content").doesNotExist();
+
+		getAndVerifyRecommendationsByProductId("?productId=1&fields=subject", UNPROCESSABLE_ENTITY)
+				.jsonPath("$.message").isEqualTo("Invalid field: subject");
+	}
+
+	@Test
+	void getRecommendationsByPage() {
+
+		postAndVerifyRecommendation(1, 3, OK);
+		postAndVerifyRecommendation(1, 1, OK);
+		postAndVerifyRecommendation(1, 2, OK);
+
+		getAndVerifyRecommendationsByProductId("?productId=1&limit=2", OK)
+				.jsonPath("$.length()").isEqualTo(2)
+				.jsonPath("$[0].recommendationId").isEqualTo(1)
+				.jsonPath("$[1].recommendationId").isEqualTo(2);
+
+		getAndVerifyRecommendationsByProductId("?productId=1&limit=2&after=2", OK)
+				.jsonPath("$.length()").isEqualTo(1)
+				.jsonPath("$[0].recommendationId").isEqualTo(3);
+
+		getAndVerifyRecommendationsByProductId("?productId=1&limit=0", UNPROCESSABLE_ENTITY)
+				.jsonPath("$.message").isEqualTo("Invalid limit: 0, expected 1 to 1000");
+	}
+
+	@Test
+	void streamRecommendations() {
+
+		postAndVerifyRecommendation(1, 1, OK);
+		postAndVerifyRecommendation(1, 2, OK);
+		postAndVerifyRecommendation(2, 1, OK);
+
+		List<Recommendation> recommendations = client.get()
+				.uri("/recommendation/stream?productId=1")
+				.accept(APPLICATION_NDJSON)
+				.exchange()
+				.expectStatus().isEqualTo(OK)
+				.expectHeader().contentType(APPLICATION_NDJSON)
+				.returnResult(Recommendation.class)
+				.getResponseBody()
+				.collectList()
+				.block();
+
+		assertEquals(2, recommendations.size());
+	}
+
+	@Test
+	void createRecommendationsInBatch() {
+
+		List<Recommendation> recommendations = List.of(
+				new Recommendation(1, 1, "Author 1", 1, "Content 1", "SA"),
+				new Recommendation(1, 2, "Author 2", 2, "Content 2", "SA"),
+				new Recommendation(2, 1, "Author 1", 1, "Content 1", "SA"));
+
+		postAndVerifyRecommendations(recommendations, OK)
+				.jsonPath("$.length()").isEqualTo(3)
+				.jsonPath("$[2].productId").isEqualTo(2);
+
+		assertEquals(3, (long) repository.count().block());
+
+		postAndVerifyRecommendations(recommendations.subList(0, 1), UNPROCESSABLE_ENTITY)
+				.jsonPath("$.path").isEqualTo("/recommendation/batch")
+				.jsonPath("$.message").isEqualTo("Duplicate key, Product Id: 1, in a batch of 1 recommendations");
+
+		assertEquals(3, (long) repository.count().block());
+	}
+
+	@Test
+	void ratingStatsFollowCreatesAndDeletes() {
+
+		postAndVerifyRecommendation(1, 1, OK);
+		postAndVerifyRecommendation(1, 3, OK);
+		postAndVerifyRecommendations(List.of(
+				new Recommendation(1, 4, "Author 4", 3, "Content 4", "SA"),
+				new Recommendation(2, 1, "Author 1", 5, "Content 1", "SA")), OK);
+
+		getAndVerifyRatingStats("?productId=1", OK)
+				.jsonPath("$.count").isEqualTo(3)
+				.jsonPath("$.sum").isEqualTo(7)
+				.jsonPath("$.histogram['1']").isEqualTo(1)
+				.jsonPath("$.histogram['3']").isEqualTo(2);
+
+		getAndVerifyRatingStats("?productIds=1,2,3", OK)
+				.jsonPath("$.length()").isEqualTo(2);
+
+		deleteAndVerifyRecommendationsByProductId(1, OK);
+
+		getAndVerifyRatingStats("?productId=1", OK)
+				.jsonPath("$.count").isEqualTo(0);
 	}
 
 	@Test
@@ -61,10 +271,10 @@ class RecommendationServiceApplicationTests extends MongoDbTestBase{
 		int recommendationId = 1;
 
 		postAndVerifyRecommendation(productId, recommendationId, OK);
-		assertEquals(1, repository.findByProductId(productId).size());
+		assertEquals(1, (long) repository.findByProductId(productId).count().block());
 
 		deleteAndVerifyRecommendationsByProductId(productId, OK);
-		assertEquals(0, repository.findByProductId(productId).size());
+		assertEquals(0, (long) repository.findByProductId(productId).count().block());
 
 		deleteAndVerifyRecommendationsByProductId(productId, OK);
 	}
@@ -83,10 +293,29 @@ class RecommendationServiceApplicationTests extends MongoDbTestBase{
 				.expectBody();
 	}
 
+	private WebTestClient.BodyContentSpec getAndVerifyRatingStats(String productIdQuery, HttpStatus expectedStatus) {
+		return client.get()
+				.uri("/recommendation/rating-stats" + productIdQuery)
+				.accept(APPLICATION_JSON)
+				.exchange()
+				.expectStatus().isEqualTo(expectedStatus)
+				.expectHeader().contentType(APPLICATION_JSON)
+				.expectBody();
+	}
+
 	private WebTestClient.BodyContentSpec postAndVerifyRecommendation(int productId, int recommendationId, HttpStatus expectedStatus) {
+		return postAndVerifyRecommendation(productId, recommendationId, null, expectedStatus);
+	}
+
+	private WebTestClient.BodyContentSpec postAndVerifyRecommendation(int productId, int recommendationId, String idempotencyKey, HttpStatus expectedStatus) {
 		Recommendation recommendation = new Recommendation(productId, recommendationId, "Author " + recommendationId, recommendationId, "Content " + recommendationId, "SA");
 		return client.post()
 				.uri("/recommendation")
+				.headers(headers -> {
+					if (idempotencyKey != null) {
+						headers.set("Idempotency-Key", idempotencyKey);
+					}
+				})
 				.body(just(recommendation), Recommendation.class)
 				.accept(APPLICATION_JSON)
 				.exchange()
@@ -95,6 +324,17 @@ class RecommendationServiceApplicationTests extends MongoDbTestBase{
 				.expectBody();
 	}
 
+	private WebTestClient.BodyContentSpec postAndVerifyRecommendations(List<Recommendation> recommendations, HttpStatus expectedStatus) {
+		return client.post()
+				.uri("/recommendation/batch")
+				.bodyValue(recommendations)
+				.accept(APPLICATION_JSON)
+				.exchange()
+				.expectStatus().isEqualTo(expectedStatus)
+				.expectHeader().contentType(APPLICATION_JSON)
+				.expectBody();
+	}
+
 	private WebTestClient.BodyContentSpec deleteAndVerifyRecommendationsByProductId(int productId, HttpStatus expectedStatus) {
 		return client.delete()
 				.uri("/recommendation?productId=" + productId)
@@ -1,14 +1,61 @@
 package com.microservices.core.review;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.ComponentScan;
-import org.springframework.stereotype.Component;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 @SpringBootApplication
 @ComponentScan("com.microservices")
 public class ReviewServiceApplication {
 
+	private static final Logger LOG = LoggerFactory.getLogger(ReviewServiceApplication.class);
+
+	private final int threadPoolSize;
+	private final int taskQueueSize;
+
+	@Autowired
+	public ReviewServiceApplication(
+			@Value("${app.jdbc-scheduler.thread-pool-size}") int threadPoolSize,
+			@Value("${app.jdbc-scheduler.task-queue-size}") int taskQueueSize) {
+		this.threadPoolSize = threadPoolSize;
+		this.taskQueueSize = taskQueueSize;
+	}
+
+	/**
+	 * Scheduler for all blocking JPA calls. The thread pool is sized to the Hikari connection pool, so no
+	 * thread waits for a connection, and the bounded task queue makes the service reject work with
+	 * a 503 instead of piling up requests while MySQL is slow.
+	 *
+	 * @return a scheduler backed by a fixed size, metered thread pool
+	 */
+	@Bean(destroyMethod = "dispose")
+	public Scheduler jdbcScheduler(MeterRegistry meterRegistry) {
+		LOG.info("Creates a jdbcScheduler with thread pool size = {} and task queue size = {}", threadPoolSize, taskQueueSize);
+
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(threadPoolSize, threadPoolSize,
+				60L, TimeUnit.SECONDS,
+				new ArrayBlockingQueue<>(taskQueueSize),
+				new CustomizableThreadFactory("jdbc-pool-"));
+		ExecutorService meteredExecutor = ExecutorServiceMetrics.monitor(meterRegistry, executor, "jdbc-pool");
+
+		return Schedulers.fromExecutorService(meteredExecutor, "jdbc-pool");
+	}
+
 	public static void main(String[] args) {
 		SpringApplication.run(ReviewServiceApplication.class, args);
 	}
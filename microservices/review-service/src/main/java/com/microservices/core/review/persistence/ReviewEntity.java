@@ -33,4 +33,9 @@ public class ReviewEntity {
     private String subject;
     private String content;
 
+    /**
+     * Key sent by the client that created the review, a create with the same key is a replay of that request.
+     */
+    private String idempotencyKey;
+
 }
@@ -5,10 +5,14 @@ import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
+import java.util.Optional;
 
 @Repository
-public interface ReviewRepository extends CrudRepository<ReviewEntity, String> {
+public interface ReviewRepository extends CrudRepository<ReviewEntity, String>, ReviewRepositoryCustom {
 
     @Transactional(readOnly = true)
     List<ReviewEntity> findByProductId(int productId);
+
+    @Transactional(readOnly = true)
+    Optional<ReviewEntity> findByProductIdAndReviewId(int productId, int reviewId);
 }
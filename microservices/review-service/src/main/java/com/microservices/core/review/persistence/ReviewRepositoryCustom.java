@@ -0,0 +1,34 @@
+package com.microservices.core.review.persistence;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface ReviewRepositoryCustom {
+
+    /**
+     * Finds a page of the reviews of a product, ordered by reviewId. The page starts after {@code afterReviewId},
+     * if given, so the next page is found by passing the last reviewId of the previous one, and the
+     * reviews_unique_idx index is used to seek to the start of the page instead of skipping rows.
+     * If {@code fields} is given, only the ids and these columns are selected, the others are left null.
+     * The returned entities are not managed.
+     */
+    List<ReviewEntity> findPageByProductId(int productId, Integer afterReviewId, int limit, Collection<String> fields);
+
+    /**
+     * Finds the first {@code limit} reviews, by reviewId, of each of the given products with a single query,
+     * numbering the reviews of each product with a window function. The reviews are returned ordered by
+     * productId and reviewId.
+     */
+    List<ReviewEntity> findFirstPagesByProductIdIn(Collection<Integer> productIds, int limit);
+
+    /**
+     * Inserts the review unless one with the same productId and reviewId already exists, with a native
+     * {@code INSERT ... ON DUPLICATE KEY UPDATE review_id = review_id} on the reviews_unique_idx index. An existing
+     * review is left untouched and no unique constraint violation is raised, so the transaction is not rolled back.
+     * Unlike {@code INSERT IGNORE}, other errors, like a too long value or a null in a not null column, still fail
+     * the insert. Returns true if the review was inserted, false if it already existed, which relies on the
+     * connection reporting affected instead of found rows ({@code useAffectedRows}). The id of the entity is set
+     * from the id generator in both cases.
+     */
+    boolean insertIfAbsent(ReviewEntity entity);
+}
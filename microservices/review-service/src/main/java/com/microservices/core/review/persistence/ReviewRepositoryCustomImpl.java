@@ -0,0 +1,111 @@
+package com.microservices.core.review.persistence;
+
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.Tuple;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import javax.persistence.criteria.Selection;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
+
+public class ReviewRepositoryCustomImpl implements ReviewRepositoryCustom {
+
+    private static final List<String> ALL_FIELDS = List.of("author", "subject", "content");
+
+    private static final String FIND_FIRST_PAGES = "SELECT id, version, product_id, review_id, author, subject, content, idempotency_key "
+            + "FROM (SELECT reviews.*, ROW_NUMBER() OVER (PARTITION BY product_id ORDER BY review_id) AS row_number_in_product "
+            + "FROM reviews WHERE product_id IN (:productIds)) numbered_reviews "
+            + "WHERE row_number_in_product <= :limit "
+            + "ORDER BY product_id, review_id";
+
+    private static final String INSERT_IF_ABSENT = "INSERT INTO reviews "
+            + "(id, version, product_id, review_id, author, subject, content, idempotency_key) "
+            + "VALUES (?, 0, ?, ?, ?, ?, ?, ?) "
+            + "ON DUPLICATE KEY UPDATE review_id = review_id";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<ReviewEntity> findPageByProductId(int productId, Integer afterReviewId, int limit, Collection<String> fields) {
+        Collection<String> selectedFields = fields == null ? ALL_FIELDS : fields;
+
+        CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = builder.createTupleQuery();
+        Root<ReviewEntity> review = query.from(ReviewEntity.class);
+
+        List<Selection<?>> selections = new ArrayList<>();
+        selections.add(review.get("productId").alias("productId"));
+        selections.add(review.get("reviewId").alias("reviewId"));
+        selectedFields.forEach(field -> selections.add(review.get(field).alias(field)));
+
+        List<Predicate> predicates = new ArrayList<>();
+        predicates.add(builder.equal(review.get("productId"), productId));
+        if (afterReviewId != null) {
+            predicates.add(builder.greaterThan(review.get("reviewId"), afterReviewId));
+        }
+
+        query.multiselect(selections)
+                .where(predicates.toArray(new Predicate[0]))
+                .orderBy(builder.asc(review.get("reviewId")));
+
+        return entityManager.createQuery(query)
+                .setMaxResults(limit)
+                .getResultList().stream()
+                .map(tuple -> {
+                    ReviewEntity entity = new ReviewEntity();
+                    entity.setProductId(tuple.get("productId", Integer.class));
+                    entity.setReviewId(tuple.get("reviewId", Integer.class));
+                    if (selectedFields.contains("author")) {
+                        entity.setAuthor(tuple.get("author", String.class));
+                    }
+                    if (selectedFields.contains("subject")) {
+                        entity.setSubject(tuple.get("subject", String.class));
+                    }
+                    if (selectedFields.contains("content")) {
+                        entity.setContent(tuple.get("content", String.class));
+                    }
+                    return entity;
+                })
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    @SuppressWarnings("unchecked")
+    public List<ReviewEntity> findFirstPagesByProductIdIn(Collection<Integer> productIds, int limit) {
+        return entityManager.createNativeQuery(FIND_FIRST_PAGES, ReviewEntity.class)
+                .setParameter("productIds", productIds)
+                .setParameter("limit", limit)
+                .getResultList();
+    }
+
+    @Override
+    @Transactional
+    public boolean insertIfAbsent(ReviewEntity entity) {
+        SharedSessionContractImplementor session = entityManager.unwrap(SharedSessionContractImplementor.class);
+        int id = (Integer) session.getFactory().getMetamodel().entityPersister(ReviewEntity.class)
+                .getIdentifierGenerator().generate(session, entity);
+        entity.setId(id);
+
+        int insertedRows = entityManager.createNativeQuery(INSERT_IF_ABSENT)
+                .setParameter(1, id)
+                .setParameter(2, entity.getProductId())
+                .setParameter(3, entity.getReviewId())
+                .setParameter(4, entity.getAuthor())
+                .setParameter(5, entity.getSubject())
+                .setParameter(6, entity.getContent())
+                .setParameter(7, entity.getIdempotencyKey())
+                .executeUpdate();
+        return insertedRows == 1;
+    }
+}
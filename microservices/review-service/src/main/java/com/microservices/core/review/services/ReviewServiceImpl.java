@@ -6,63 +6,265 @@ import com.microservices.api.exception.InvalidInputException;
 import com.microservices.core.review.persistence.ReviewEntity;
 import com.microservices.core.review.persistence.ReviewRepository;
 import com.microservices.util.ServiceUtil;
+import com.microservices.util.TimedProxy;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.sleuth.CurrentTraceContext;
+import org.springframework.cloud.sleuth.Tracer;
+import org.springframework.cloud.sleuth.instrument.reactor.ReactorSleuth;
 import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
 
 import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.stream.Collectors;
 
 @RestController
 public class ReviewServiceImpl implements ReviewService {
 
     private final Logger LOG = LoggerFactory.getLogger(ReviewServiceImpl.class);
 
+    private static final Set<String> PROJECTABLE_FIELDS = Set.of("author", "subject", "content");
+
     private final ServiceUtil serviceUtil;
 
     private final ReviewRepository repository;
 
     private final ReviewMapper mapper;
 
+    private final Scheduler jdbcScheduler;
+
+    private final Tracer tracer;
+
+    private final CurrentTraceContext currentTraceContext;
+
+    private final int defaultPageSize;
+
+    private final int maxPageSize;
+
+    private final int streamPageSize;
+
+    private final int batchMaxSize;
+
+    private final BloomFilter storedReviewKeys;
+
     @Autowired
-    public ReviewServiceImpl(ServiceUtil serviceUtil, ReviewRepository repository, ReviewMapper mapper) {
+    public ReviewServiceImpl(ServiceUtil serviceUtil, ReviewRepository repository, ReviewMapper mapper, MeterRegistry registry,
+                             @Qualifier("jdbcScheduler") Scheduler jdbcScheduler,
+                             Tracer tracer, CurrentTraceContext currentTraceContext,
+                             @Value("${app.page.default-size}") int defaultPageSize,
+                             @Value("${app.page.max-size}") int maxPageSize,
+                             @Value("${app.page.stream-size}") int streamPageSize,
+                             @Value("${app.batch.max-size}") int batchMaxSize,
+                             @Value("${app.duplicate-filter.expected-insertions}") long duplicateFilterExpectedInsertions,
+                             @Value("${app.duplicate-filter.false-positive-probability}") double duplicateFilterFalsePositiveProbability) {
         this.serviceUtil = serviceUtil;
         this.repository = repository;
-        this.mapper = mapper;
+        this.mapper = TimedProxy.wrap(ReviewMapper.class, mapper, registry, "mapper.calls");
+        this.jdbcScheduler = jdbcScheduler;
+        this.tracer = tracer;
+        this.currentTraceContext = currentTraceContext;
+        this.defaultPageSize = defaultPageSize;
+        this.maxPageSize = maxPageSize;
+        this.streamPageSize = streamPageSize;
+        this.batchMaxSize = batchMaxSize;
+        this.storedReviewKeys = new BloomFilter(duplicateFilterExpectedInsertions, duplicateFilterFalsePositiveProbability);
+    }
+
+    /**
+     * Returns one page of the reviews of a product, ordered by reviewId. A page holds at most {@code limit}
+     * reviews, or the default page size, and starts after the reviewId given in {@code after}, so the next
+     * page is requested with the last reviewId of the current page.
+     * If {@code fields} is given, only the ids and the listed columns are selected from the database
+     * and returned, the other fields are left out of the response.
+     */
+    @Override
+    public Flux<Review> getReviews(int productId, List<String> fields, Integer limit, Integer afterReviewId) {
+        if (productId < 1) {
+            throw new InvalidInputException("Invalid productId: " + productId);
+        }
+        if (limit != null && (limit < 1 || limit > maxPageSize)) {
+            throw new InvalidInputException("Invalid limit: " + limit + ", expected 1 to " + maxPageSize);
+        }
+        if (fields != null) {
+            fields.forEach(field -> {
+                if (!PROJECTABLE_FIELDS.contains(field)) {
+                    throw new InvalidInputException("Invalid field: " + field);
+                }
+            });
+        }
+
+        int pageSize = limit == null ? defaultPageSize : limit;
+        return onJdbcScheduler("ReviewRepository.findPageByProductId", () -> repository.findPageByProductId(productId, afterReviewId, pageSize, fields))
+                .map(reviewList -> {
+                    List<Review> apiList = mapper.entityListToApiList(reviewList);
+                    apiList.forEach(review -> review.setServiceAddress(serviceUtil.getServiceAddress()));
+
+                    LOG.debug("getReview: reviews response size: {}", apiList.size());
+                    return apiList;
+                })
+                .flatMapMany(Flux::fromIterable);
+    }
+
+    /**
+     * Returns the first page of the reviews of each of the given products, at most {@code limit} reviews per
+     * product, or the default page size, ordered by productId and reviewId. All pages are read with a single query,
+     * so a product with many reviews adds no more than one page to the response.
+     * At most {@code batchMaxSize} productIds are accepted.
+     */
+    @Override
+    public Flux<Review> getReviewsForProducts(List<Integer> productIds, Integer limit) {
+        if (productIds.isEmpty() || productIds.size() > batchMaxSize) {
+            throw new InvalidInputException("Invalid number of productIds: " + productIds.size() + ", expected 1 to " + batchMaxSize);
+        }
+        productIds.forEach(productId -> {
+            if (productId < 1) {
+                throw new InvalidInputException("Invalid productId: " + productId);
+            }
+        });
+        if (limit != null && (limit < 1 || limit > maxPageSize)) {
+            throw new InvalidInputException("Invalid limit: " + limit + ", expected 1 to " + maxPageSize);
+        }
+
+        int pageSize = limit == null ? defaultPageSize : limit;
+        return onJdbcScheduler("ReviewRepository.findFirstPagesByProductIdIn", () -> repository.findFirstPagesByProductIdIn(productIds, pageSize))
+                .map(reviewList -> {
+                    List<Review> apiList = mapper.entityListToApiList(reviewList);
+                    apiList.forEach(review -> review.setServiceAddress(serviceUtil.getServiceAddress()));
+
+                    LOG.debug("getReviewsForProducts: reviews response size: {}", apiList.size());
+                    return apiList;
+                })
+                .flatMapMany(Flux::fromIterable);
     }
 
+    /**
+     * Streams all reviews of a product. JDBC has no non-blocking cursor, so the reviews are read page by page
+     * on the jdbcScheduler, as the client requests them: pages are taken one at a time from the paging, and the
+     * page after the one being sent is read ahead, but no further. At most two pages are held in memory
+     * regardless of the number of reviews, and the first reviews are sent as soon as the first page has been read.
+     */
     @Override
-    public List<Review> getReviews(int productId) {
+    public Flux<Review> streamReviews(int productId) {
         if (productId < 1) {
             throw new InvalidInputException("Invalid productId: " + productId);
         }
 
-        List<ReviewEntity> reviewList = repository.findByProductId(productId);
-        List<Review> apiList = mapper.entityListToApiList(reviewList);
-        apiList.forEach(review -> review.setServiceAddress(serviceUtil.getServiceAddress()));
+        return findStreamPage(productId, null)
+                .expand(page -> page.size() < streamPageSize
+                        ? Mono.empty()
+                        : findStreamPage(productId, page.get(page.size() - 1).getReviewId()))
+                .flatMapIterable(page -> page, 1)
+                .map(entity -> {
+                    Review review = mapper.entityToApi(entity);
+                    review.setServiceAddress(serviceUtil.getServiceAddress());
+                    return review;
+                })
+                .doOnComplete(() -> LOG.debug("streamReviews: completed for productId: {}", productId));
+    }
 
-        LOG.debug("getReview: reviews response size: {}", apiList.size());
-        return apiList;
+    private Mono<List<ReviewEntity>> findStreamPage(int productId, Integer afterReviewId) {
+        return onJdbcScheduler("ReviewRepository.findPageByProductId", () -> repository.findPageByProductId(productId, afterReviewId, streamPageSize, null));
     }
 
+    /**
+     * Creates the review with an insert-if-absent, so an existing productId/reviewId is detected from the number
+     * of inserted rows instead of a unique constraint violation and a rolled back transaction, also for reviews
+     * stored by other instances or before a restart. The keys of the reviews this instance has stored or seen are
+     * kept in a Bloom filter: if the filter might contain the productId/reviewId, the review is looked up first,
+     * so a retried create is answered by a single read.
+     * If the existing review was created with the same {@code Idempotency-Key}, the request is a replay and the
+     * stored review is returned without writing anything, otherwise it is rejected as a duplicate.
+     */
     @Override
-    public Review createReview(Review body) {
-        try {
-            ReviewEntity entity = mapper.apiToEntity(body);
-            ReviewEntity savedEntity = repository.save(entity);
-
-            LOG.debug("createReview: created a review entity (productId/reviewId): {}/{}", savedEntity.getProductId(), savedEntity.getReviewId());
-            return mapper.entityToApi(savedEntity);
-        } catch (DataIntegrityViolationException dive) {
-            throw new InvalidInputException("Duplicate key, productId: " + body.getProductId() + "Review Id: " + body.getReviewId());
+    public Mono<Review> createReview(Review body, String idempotencyKey) {
+        ReviewEntity entity = mapper.apiToEntity(body);
+        entity.setIdempotencyKey(idempotencyKey);
+        long reviewKey = reviewKey(body.getProductId(), body.getReviewId());
+
+        return onJdbcScheduler("ReviewRepository.insertIfAbsent", () -> {
+                    if (storedReviewKeys.mightContain(reviewKey)) {
+                        Optional<ReviewEntity> existingEntity = repository.findByProductIdAndReviewId(body.getProductId(), body.getReviewId());
+                        if (existingEntity.isPresent()) {
+                            return replayedReview(existingEntity.get(), idempotencyKey);
+                        }
+                    }
+                    boolean inserted = repository.insertIfAbsent(entity);
+                    storedReviewKeys.put(reviewKey);
+                    if (!inserted) {
+                        return repository.findByProductIdAndReviewId(body.getProductId(), body.getReviewId())
+                                .map(existingEntity -> replayedReview(existingEntity, idempotencyKey))
+                                .orElseThrow(() -> new InvalidInputException("Duplicate key, productId: " + body.getProductId() + "Review Id: " + body.getReviewId()));
+                    }
+                    LOG.debug("createReview: created a review entity (productId/reviewId): {}/{}", entity.getProductId(), entity.getReviewId());
+                    return entity;
+                })
+                .map(mapper::entityToApi);
+    }
+
+    private ReviewEntity replayedReview(ReviewEntity existingEntity, String idempotencyKey) {
+        if (idempotencyKey == null || !idempotencyKey.equals(existingEntity.getIdempotencyKey())) {
+            throw new InvalidInputException("Duplicate key, productId: " + existingEntity.getProductId() + "Review Id: " + existingEntity.getReviewId());
         }
+        LOG.debug("createReview: replayed create of review (productId/reviewId): {}/{}", existingEntity.getProductId(), existingEntity.getReviewId());
+        return existingEntity;
+    }
+
+    private static long reviewKey(int productId, int reviewId) {
+        return ((long) productId << 32) | (reviewId & 0xffffffffL);
+    }
+
+    /**
+     * Stores all reviews in one transaction using JDBC batch inserts, either all reviews are created or none.
+     */
+    @Override
+    public Flux<Review> createReviews(List<Review> body) {
+        List<ReviewEntity> entities = mapper.apiListToEntityList(body);
+
+        return onJdbcScheduler("ReviewRepository.saveAll", () -> repository.saveAll(entities))
+                .onErrorMap(DataIntegrityViolationException.class, dive ->
+                        new InvalidInputException("Duplicate key, productId: " + distinctProductIds(body) + ", in a batch of " + body.size() + " reviews"))
+                .doOnNext(savedEntities -> {
+                    savedEntities.forEach(savedEntity -> storedReviewKeys.put(reviewKey(savedEntity.getProductId(), savedEntity.getReviewId())));
+                    LOG.debug("createReviews: created {} review entities", body.size());
+                })
+                .flatMapIterable(savedEntities -> savedEntities)
+                .map(mapper::entityToApi);
+    }
+
+    private String distinctProductIds(List<Review> reviews) {
+        return reviews.stream()
+                .map(review -> String.valueOf(review.getProductId()))
+                .distinct()
+                .collect(Collectors.joining(","));
     }
 
     @Override
-    public void deleteReview(int productId) {
+    public Mono<Void> deleteReview(int productId) {
         LOG.debug("deleteReview: delete all reviews of product Id: {}", productId);
-        List<ReviewEntity> reviews = repository.findByProductId(productId);
-        repository.deleteAll(reviews);
+        return onJdbcScheduler("ReviewRepository.deleteAll", () -> {
+                    List<ReviewEntity> reviews = repository.findByProductId(productId);
+                    repository.deleteAll(reviews);
+                    return null;
+                })
+                .then();
+    }
+
+    /**
+     * Runs a blocking repository call on the jdbcScheduler, in a span of its own that also covers the wait
+     * for a thread of the scheduler, so a saturated scheduler shows up in the trace of the request.
+     */
+    private <T> Mono<T> onJdbcScheduler(String spanName, Callable<T> call) {
+        return ReactorSleuth.tracedMono(tracer, currentTraceContext, spanName,
+                () -> Mono.fromCallable(call).subscribeOn(jdbcScheduler));
     }
 }
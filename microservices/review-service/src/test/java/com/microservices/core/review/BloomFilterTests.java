@@ -0,0 +1,36 @@
+package com.microservices.core.review;
+
+import com.microservices.core.review.services.BloomFilter;
+import org.junit.jupiter.api.Test;
+
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BloomFilterTests {
+
+    @Test
+    void addedKeysAreAlwaysFound() {
+        BloomFilter filter = new BloomFilter(10_000, 0.01);
+
+        LongStream.range(0, 10_000).forEach(filter::put);
+
+        assertTrue(LongStream.range(0, 10_000).allMatch(filter::mightContain));
+    }
+
+    @Test
+    void falsePositivesStayNearTheConfiguredProbability() {
+        BloomFilter filter = new BloomFilter(10_000, 0.01);
+        LongStream.range(0, 10_000).forEach(filter::put);
+
+        long falsePositives = LongStream.range(1_000_000, 1_100_000).filter(filter::mightContain).count();
+
+        assertTrue(falsePositives < 2_000, "false positives: " + falsePositives);
+    }
+
+    @Test
+    void invalidSizeIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new BloomFilter(0, 0.01));
+        assertThrows(IllegalArgumentException.class, () -> new BloomFilter(100, 1.0));
+    }
+}
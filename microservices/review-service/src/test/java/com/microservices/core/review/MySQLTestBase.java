@@ -7,7 +7,7 @@ import org.testcontainers.containers.MySQLContainer;
 
 public abstract class MySQLTestBase {
 
-    private static MySQLContainer database = new MySQLContainer("mysql:5.7.32");
+    private static MySQLContainer database = new MySQLContainer("mysql:8.0.32");
 
     static {
         database.start();
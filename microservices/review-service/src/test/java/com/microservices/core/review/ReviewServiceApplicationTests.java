@@ -1,6 +1,8 @@
 package com.microservices.core.review;
 
 import com.microservices.api.core.review.Review;
+import com.microservices.api.core.review.ReviewService;
+import com.microservices.core.review.persistence.ReviewEntity;
 import com.microservices.core.review.persistence.ReviewRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -9,13 +11,19 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.HttpStatus;
 import org.springframework.test.web.reactive.server.WebTestClient;
 import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import static org.junit.Assert.assertEquals;
 import static org.springframework.http.HttpStatus.OK;
 import static org.springframework.http.HttpStatus.UNPROCESSABLE_ENTITY;
 import static org.springframework.http.MediaType.APPLICATION_JSON;
+import static org.springframework.http.MediaType.APPLICATION_NDJSON;
 
-@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {"app.page.stream-size=2"})
 class ReviewServiceApplicationTests extends MySQLTestBase{
 
 	@Autowired
@@ -24,6 +32,9 @@ class ReviewServiceApplicationTests extends MySQLTestBase{
 	@Autowired
 	private ReviewRepository repository;
 
+	@Autowired
+	private ReviewService reviewService;
+
 	@BeforeEach
 	void setupDb() {
 		repository.deleteAll();
@@ -47,6 +58,163 @@ class ReviewServiceApplicationTests extends MySQLTestBase{
 				.jsonPath("$.[2].reviewId").isEqualTo(3);
 	}
 
+	@Test
+	void getReviewsForProducts() {
+		postAndVerifyReview(1, 1, OK);
+		postAndVerifyReview(1, 2, OK);
+		postAndVerifyReview(2, 1, OK);
+		postAndVerifyReview(3, 1, OK);
+
+		client.get()
+				.uri("/review?productIds=1,2")
+				.accept(APPLICATION_JSON)
+				.exchange()
+				.expectStatus().isEqualTo(OK)
+				.expectHeader().contentType(APPLICATION_JSON)
+				.expectBody()
+				.jsonPath("$.length()").isEqualTo(3);
+
+		client.get()
+				.uri("/review?productIds=1,2&limit=1")
+				.accept(APPLICATION_JSON)
+				.exchange()
+				.expectStatus().isEqualTo(OK)
+				.expectHeader().contentType(APPLICATION_JSON)
+				.expectBody()
+				.jsonPath("$.length()").isEqualTo(2)
+				.jsonPath("$[0].productId").isEqualTo(1)
+				.jsonPath("$[0].reviewId").isEqualTo(1)
+				.jsonPath("$[1].productId").isEqualTo(2);
+	}
+
+	@Test
+	void getReviewsForTooManyProducts() {
+		String productIds = IntStream.rangeClosed(1, 201).mapToObj(String::valueOf).collect(Collectors.joining(","));
+
+		client.get()
+				.uri("/review?productIds=" + productIds)
+				.accept(APPLICATION_JSON)
+				.exchange()
+				.expectStatus().isEqualTo(UNPROCESSABLE_ENTITY)
+				.expectBody()
+				.jsonPath("$.message").isEqualTo("Invalid number of productIds: 201, expected 1 to 200");
+	}
+
+	@Test
+	void getReviewsWithFields() {
+		postAndVerifyReview(1, 1, OK);
+
+		client.get()
+				.uri("/review?productId=1&fields=author,subject")
+				.accept(APPLICATION_JSON)
+				.exchange()
+				.expectStatus().isEqualTo(OK)
+				.expectHeader().contentType(APPLICATION_JSON)
+				.expectBody()
+				.jsonPath("$.length()").isEqualTo(1)
+				.jsonPath("$[0].reviewId").isEqualTo(1)
+				.jsonPath("$[0].author").isEqualTo("Author1")
+				.jsonPath("$[0].subject").isEqualTo("Subject1")
+				.jsonPath("$[0].content").doesNotExist();
+
+		client.get()
+				.uri("/review?productId=1&fields=rate")
+				.accept(APPLICATION_JSON)
+				.exchange()
+				.expectStatus().isEqualTo(UNPROCESSABLE_ENTITY)
+				.expectBody()
+				.jsonPath("$.message").isEqualTo("Invalid field: rate");
+	}
+
+	@Test
+	void getReviewsByPage() {
+		postAndVerifyReview(1, 3, OK);
+		postAndVerifyReview(1, 1, OK);
+		postAndVerifyReview(1, 2, OK);
+
+		client.get()
+				.uri("/review?productId=1&limit=2")
+				.accept(APPLICATION_JSON)
+				.exchange()
+				.expectStatus().isEqualTo(OK)
+				.expectBody()
+				.jsonPath("$.length()").isEqualTo(2)
+				.jsonPath("$[0].reviewId").isEqualTo(1)
+				.jsonPath("$[1].reviewId").isEqualTo(2);
+
+		client.get()
+				.uri("/review?productId=1&limit=2&after=2")
+				.accept(APPLICATION_JSON)
+				.exchange()
+				.expectStatus().isEqualTo(OK)
+				.expectBody()
+				.jsonPath("$.length()").isEqualTo(1)
+				.jsonPath("$[0].reviewId").isEqualTo(3);
+
+		client.get()
+				.uri("/review?productId=1&limit=1001")
+				.accept(APPLICATION_JSON)
+				.exchange()
+				.expectStatus().isEqualTo(UNPROCESSABLE_ENTITY)
+				.expectBody()
+				.jsonPath("$.message").isEqualTo("Invalid limit: 1001, expected 1 to 1000");
+	}
+
+	@Test
+	void streamReviews() {
+		postAndVerifyReview(1, 3, OK);
+		postAndVerifyReview(1, 1, OK);
+		postAndVerifyReview(1, 2, OK);
+		postAndVerifyReview(2, 1, OK);
+
+		List<Review> reviews = client.get()
+				.uri("/review/stream?productId=1")
+				.accept(APPLICATION_NDJSON)
+				.exchange()
+				.expectStatus().isEqualTo(OK)
+				.expectHeader().contentType(APPLICATION_NDJSON)
+				.returnResult(Review.class)
+				.getResponseBody()
+				.collectList()
+				.block();
+
+		assertEquals(3, reviews.size());
+		assertEquals(3, reviews.get(2).getReviewId());
+	}
+
+	@Test
+	void streamedReviewsAreReadOnDemand() {
+		postAndVerifyReview(1, 1, OK);
+		postAndVerifyReview(1, 2, OK);
+		postAndVerifyReview(1, 3, OK);
+		postAndVerifyReview(1, 4, OK);
+
+		// Only the first page and the one after it are read before the rest is requested,
+		// so reviews stored in the meantime show up in the later pages
+		StepVerifier.create(reviewService.streamReviews(1), 1)
+				.expectNextMatches(review -> review.getReviewId() == 1)
+				.then(() -> {
+					postAndVerifyReview(1, 5, OK);
+					postAndVerifyReview(1, 6, OK);
+				})
+				.thenRequest(Long.MAX_VALUE)
+				.expectNextCount(5)
+				.verifyComplete();
+	}
+
+	@Test
+	void replayedCreateIsANoOp() {
+		postAndVerifyReview(1, 1, "key-1", OK)
+				.jsonPath("$.reviewId").isEqualTo(1);
+		postAndVerifyReview(1, 1, "key-1", OK)
+				.jsonPath("$.reviewId").isEqualTo(1);
+
+		assertEquals(1, repository.count());
+
+		postAndVerifyReview(1, 1, "key-2", UNPROCESSABLE_ENTITY)
+				.jsonPath("$.message").isEqualTo("Duplicate key, productId: 1Review Id: 1");
+	}
+
 	@Test
 	void duplicateError() {
 		int productId = 1;
@@ -61,6 +229,47 @@ class ReviewServiceApplicationTests extends MySQLTestBase{
 		assertEquals(1, repository.count());
 	}
 
+	@Test
+	void reviewStoredByAnotherInstanceIsDetected() {
+		repository.save(new ReviewEntity(0, 0, 1, 1, "Author1", "Subject1", "Content1", "key-1"));
+
+		postAndVerifyReview(1, 1, "key-1", OK)
+				.jsonPath("$.reviewId").isEqualTo(1);
+		postAndVerifyReview(1, 1, UNPROCESSABLE_ENTITY)
+				.jsonPath("$.message").isEqualTo("Duplicate key, productId: 1Review Id: 1");
+
+		assertEquals(1, repository.count());
+	}
+
+	@Test
+	void createReviewsInBatch() {
+		List<Review> reviews = List.of(
+				new Review(1, 1, "Author1", "Subject1", "Content1"),
+				new Review(1, 2, "Author2", "Subject2", "Content2"),
+				new Review(2, 1, "Author1", "Subject1", "Content1"));
+
+		assertEquals(0, repository.count());
+
+		postAndVerifyReviews(reviews, OK)
+				.jsonPath("$.length()").isEqualTo(3)
+				.jsonPath("$[2].productId").isEqualTo(2);
+
+		assertEquals(3, repository.count());
+	}
+
+	@Test
+	void duplicateErrorInBatchRollsBackTheBatch() {
+		List<Review> reviews = List.of(
+				new Review(1, 1, "Author1", "Subject1", "Content1"),
+				new Review(1, 1, "Author1", "Subject1", "Content1"));
+
+		postAndVerifyReviews(reviews, UNPROCESSABLE_ENTITY)
+				.jsonPath("$.message").isEqualTo("Duplicate key, productId: 1, in a batch of 2 reviews")
+				.jsonPath("$.path").isEqualTo("/review/batch");
+
+		assertEquals(0, repository.count());
+	}
+
 	@Test
 	void deleteReview() {
 		int productId = 1;
@@ -92,9 +301,18 @@ class ReviewServiceApplicationTests extends MySQLTestBase{
 	}
 
 	private WebTestClient.BodyContentSpec postAndVerifyReview(int productId, int reviewId, HttpStatus expectedStatus) {
+		return postAndVerifyReview(productId, reviewId, null, expectedStatus);
+	}
+
+	private WebTestClient.BodyContentSpec postAndVerifyReview(int productId, int reviewId, String idempotencyKey, HttpStatus expectedStatus) {
 		Review review = new Review(productId, reviewId, "Author" + reviewId, "Subject" + reviewId, "Content" + reviewId);
 		return client.post()
 				.uri("/review")
+				.headers(headers -> {
+					if (idempotencyKey != null) {
+						headers.set("Idempotency-Key", idempotencyKey);
+					}
+				})
 				.accept(APPLICATION_JSON)
 				.body(Mono.just(review), Review.class)
 				.exchange()
@@ -103,6 +321,17 @@ class ReviewServiceApplicationTests extends MySQLTestBase{
 				.expectBody();
 	}
 
+	private WebTestClient.BodyContentSpec postAndVerifyReviews(List<Review> reviews, HttpStatus expectedStatus) {
+		return client.post()
+				.uri("/review/batch")
+				.accept(APPLICATION_JSON)
+				.bodyValue(reviews)
+				.exchange()
+				.expectStatus().isEqualTo(expectedStatus)
+				.expectHeader().contentType(APPLICATION_JSON)
+				.expectBody();
+	}
+
 	private WebTestClient.BodyContentSpec getAndVerifyReviewsByProductId(int productId, HttpStatus expectedStatus) {
 		return client.get()
 				.uri("/review?productId=" + productId)
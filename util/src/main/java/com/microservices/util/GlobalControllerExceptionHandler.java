@@ -3,50 +3,76 @@ package com.microservices.util;
 import com.microservices.api.exception.BadRequestException;
 import com.microservices.api.exception.InvalidInputException;
 import com.microservices.api.exception.NotFoundException;
+import com.microservices.api.exception.ServiceUnavailableException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.http.server.reactive.ServerHttpRequest;
 import org.springframework.web.bind.annotation.ExceptionHandler;
-import org.springframework.web.bind.annotation.ResponseBody;
-import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
 
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Maps the exceptions of the services to error responses with an {@link HttpErrorInfo} body. The bodies are
+ * encoded by an {@link HttpErrorInfoEncoder} per status, prepared up front, as 404 and 422 responses can make up
+ * a large share of the requests, for example when a scraper requests product ids that do not exist.
+ */
 @RestControllerAdvice
 public class GlobalControllerExceptionHandler {
 
     private static final Logger LOG = LoggerFactory.getLogger(GlobalControllerExceptionHandler.class);
 
-    @ResponseStatus(HttpStatus.NOT_FOUND)
+    private static final HttpErrorInfoEncoder NOT_FOUND = new HttpErrorInfoEncoder(HttpStatus.NOT_FOUND);
+    private static final HttpErrorInfoEncoder UNPROCESSABLE_ENTITY = new HttpErrorInfoEncoder(HttpStatus.UNPROCESSABLE_ENTITY);
+    private static final HttpErrorInfoEncoder BAD_REQUEST = new HttpErrorInfoEncoder(HttpStatus.BAD_REQUEST);
+    private static final HttpErrorInfoEncoder SERVICE_UNAVAILABLE = new HttpErrorInfoEncoder(HttpStatus.SERVICE_UNAVAILABLE);
+
     @ExceptionHandler(NotFoundException.class)
-    public @ResponseBody HttpErrorInfo handleNotFoundException(
+    public ResponseEntity<byte[]> handleNotFoundException(
             ServerHttpRequest request, NotFoundException exception) {
 
-        return createHttpErrorInfo(HttpStatus.NOT_FOUND, request, exception);
+        return createHttpErrorInfo(NOT_FOUND, request, exception);
     }
 
-    @ResponseStatus(HttpStatus.UNPROCESSABLE_ENTITY)
     @ExceptionHandler(InvalidInputException.class)
-    public @ResponseBody HttpErrorInfo handleInvalidInputException(
+    public ResponseEntity<byte[]> handleInvalidInputException(
             ServerHttpRequest request, InvalidInputException e) {
 
-        return createHttpErrorInfo(HttpStatus.UNPROCESSABLE_ENTITY, request, e);
+        return createHttpErrorInfo(UNPROCESSABLE_ENTITY, request, e);
     }
 
-    @ResponseStatus(HttpStatus.BAD_REQUEST)
     @ExceptionHandler(BadRequestException.class)
-    public @ResponseBody HttpErrorInfo handleBadRequestException(
+    public ResponseEntity<byte[]> handleBadRequestException(
             ServerHttpRequest request, BadRequestException e
     ) {
-        return createHttpErrorInfo(HttpStatus.BAD_REQUEST, request, e);
+        return createHttpErrorInfo(BAD_REQUEST, request, e);
+    }
+
+    @ExceptionHandler(RejectedExecutionException.class)
+    public ResponseEntity<byte[]> handleRejectedExecutionException(
+            ServerHttpRequest request, RejectedExecutionException e
+    ) {
+        return createHttpErrorInfo(SERVICE_UNAVAILABLE, request, e);
+    }
+
+    @ExceptionHandler(ServiceUnavailableException.class)
+    public ResponseEntity<byte[]> handleServiceUnavailableException(
+            ServerHttpRequest request, ServiceUnavailableException e
+    ) {
+        return createHttpErrorInfo(SERVICE_UNAVAILABLE, request, e);
     }
 
-    private HttpErrorInfo createHttpErrorInfo(
-            HttpStatus status, ServerHttpRequest request, Exception exception) {
+    private ResponseEntity<byte[]> createHttpErrorInfo(
+            HttpErrorInfoEncoder encoder, ServerHttpRequest request, Exception exception) {
         final String path = request.getPath().pathWithinApplication().value();
         final String message = exception.getMessage();
-        LOG.debug("Returning HTTP status: {} for path: {}, message: {}", status, path, message);
+        LOG.debug("Returning HTTP status: {} for path: {}, message: {}", encoder.getStatus(), path, message);
 
-        return new HttpErrorInfo(path, status, message);
+        return ResponseEntity.status(encoder.getStatus())
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(encoder.encode(path, message));
     }
 }
@@ -0,0 +1,132 @@
+package com.microservices.util;
+
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+import org.springframework.http.HttpStatus;
+
+import java.nio.charset.StandardCharsets;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+
+/**
+ * Encodes the body of an error response, in the JSON format of {@link HttpErrorInfo}, without going through the
+ * ObjectMapper. The parts that only depend on the HTTP status are encoded once, when the encoder is created, so
+ * an error response only costs encoding the timestamp, in UTC, the path and the message.
+ * The body is written into a buffer per thread, which is reused by the next error response on the same thread,
+ * so the only allocation left per response is the returned array, of the exact size of the body, and the timestamp.
+ * Paths and messages that are printable ASCII without quotes or backslashes, which most are, are copied as they are,
+ * others are escaped by Jackson.
+ */
+final class HttpErrorInfoEncoder {
+
+    private static final byte[] TIMESTAMP_FIELD = ascii("{\"timestamp\":\"");
+    private static final byte[] PATH_FIELD = ascii("\",\"path\":");
+    private static final byte[] END = ascii("}");
+    private static final byte[] NULL = ascii("null");
+
+    private static final ThreadLocal<Buffer> BUFFERS = ThreadLocal.withInitial(Buffer::new);
+
+    private final HttpStatus status;
+
+    private final byte[] statusAndMessageField;
+
+    HttpErrorInfoEncoder(HttpStatus status) {
+        this.status = status;
+        this.statusAndMessageField = ascii(",\"httpStatus\":\"" + status.name() + "\",\"message\":");
+    }
+
+    HttpStatus getStatus() {
+        return status;
+    }
+
+    byte[] encode(String path, String message) {
+        Buffer out = BUFFERS.get();
+        out.reset();
+        out.write(TIMESTAMP_FIELD);
+        out.writeAscii(DateTimeFormatter.ISO_OFFSET_DATE_TIME.format(OffsetDateTime.now(ZoneOffset.UTC)));
+        out.write(PATH_FIELD);
+        writeString(out, path);
+        out.write(statusAndMessageField);
+        writeString(out, message);
+        out.write(END);
+        return out.toByteArray();
+    }
+
+    private static void writeString(Buffer out, String value) {
+        if (value == null) {
+            out.write(NULL);
+            return;
+        }
+        out.write('"');
+        if (isPlainAscii(value)) {
+            out.writeAscii(value);
+        } else {
+            out.write(JsonStringEncoder.getInstance().quoteAsUTF8(value));
+        }
+        out.write('"');
+    }
+
+    private static boolean isPlainAscii(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x20 || c > 0x7e || c == '"' || c == '\\') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static byte[] ascii(String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * A growable byte array, like a ByteArrayOutputStream without its synchronization. A buffer that has grown
+     * beyond {@code MAX_RETAINED_SIZE} for an unusually long message is replaced by a small one on the next reset,
+     * so the buffers kept by the threads stay small.
+     */
+    private static final class Buffer {
+
+        private static final int INITIAL_SIZE = 256;
+        private static final int MAX_RETAINED_SIZE = 4096;
+
+        private byte[] bytes = new byte[INITIAL_SIZE];
+        private int size;
+
+        void reset() {
+            if (bytes.length > MAX_RETAINED_SIZE) {
+                bytes = new byte[INITIAL_SIZE];
+            }
+            size = 0;
+        }
+
+        void write(int b) {
+            ensureCapacity(1);
+            bytes[size++] = (byte) b;
+        }
+
+        void write(byte[] b) {
+            ensureCapacity(b.length);
+            System.arraycopy(b, 0, bytes, size, b.length);
+            size += b.length;
+        }
+
+        void writeAscii(String value) {
+            ensureCapacity(value.length());
+            for (int i = 0; i < value.length(); i++) {
+                bytes[size++] = (byte) value.charAt(i);
+            }
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(bytes, size);
+        }
+
+        private void ensureCapacity(int extra) {
+            if (size + extra > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + extra));
+            }
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.microservices.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.cloud.sleuth.exporter.FinishedSpan;
+import org.springframework.cloud.sleuth.exporter.SpanReporter;
+import org.springframework.stereotype.Component;
+
+/**
+ * Exports the finished spans to the log, one line per span at debug level, so traces can be followed without a
+ * tracing backend. A request keeps its trace id across the composite and the core services, so the lines of one
+ * trace id in the logs of all services, ordered by start time, show where the time of the request went.
+ * The start time is in microseconds since the epoch, the duration in microseconds.
+ * It is only registered when {@code app.tracing.log-spans} is true, since a line per span is too much for production.
+ */
+@Component
+@ConditionalOnProperty(name = "app.tracing.log-spans", havingValue = "true")
+public class LoggingSpanReporter implements SpanReporter {
+
+    private static final Logger LOG = LoggerFactory.getLogger(LoggingSpanReporter.class);
+
+    @Override
+    public void report(FinishedSpan span) {
+        if (!LOG.isDebugEnabled()) {
+            return;
+        }
+        LOG.debug("span traceId: {}, spanId: {}, parentId: {}, name: {}, kind: {}, remote: {}, start: {}, duration: {} us, tags: {}, error: {}",
+                span.getTraceId(),
+                span.getSpanId(),
+                span.getParentId(),
+                span.getName(),
+                span.getKind(),
+                span.getRemoteServiceName(),
+                span.getStartTimestamp(),
+                span.getEndTimestamp() - span.getStartTimestamp(),
+                span.getTags(),
+                span.getError());
+    }
+}
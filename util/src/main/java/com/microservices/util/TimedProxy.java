@@ -0,0 +1,50 @@
+package com.microservices.util;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Wraps an implementation of an interface, for example a mapper, in a proxy that times every call to the methods
+ * of the interface. The calls are recorded in the given timer, tagged with the simple name of the interface in
+ * {@code type} and the name of the method in {@code method}.
+ */
+public final class TimedProxy {
+
+    private TimedProxy() {
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <T> T wrap(Class<T> type, T target, MeterRegistry registry, String timerName) {
+        Map<Method, Timer> timers = new ConcurrentHashMap<>();
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+            if (method.getDeclaringClass() == Object.class) {
+                return invoke(method, target, args);
+            }
+            Timer timer = timers.computeIfAbsent(method, m -> Timer.builder(timerName)
+                    .tag("type", type.getSimpleName())
+                    .tag("method", m.getName())
+                    .register(registry));
+            long start = System.nanoTime();
+            try {
+                return invoke(method, target, args);
+            } finally {
+                timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+        });
+    }
+
+    private static Object invoke(Method method, Object target, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException ex) {
+            throw ex.getCause();
+        }
+    }
+}
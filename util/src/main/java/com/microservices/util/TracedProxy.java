@@ -0,0 +1,57 @@
+package com.microservices.util;
+
+import org.springframework.cloud.sleuth.CurrentTraceContext;
+import org.springframework.cloud.sleuth.Tracer;
+import org.springframework.cloud.sleuth.instrument.reactor.ReactorSleuth;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.lang.reflect.UndeclaredThrowableException;
+
+/**
+ * Wraps an implementation of a reactive interface, for example a repository, in a proxy that traces every call
+ * to the methods of the interface returning a {@link Mono} or a {@link Flux}. Each call gets its own span, named
+ * after the simple name of the interface and the method, as a child of the span in the Reactor context of the
+ * subscriber, and the span lasts until the publisher completes, fails or is cancelled.
+ * Calls of methods with other return types are passed on untraced.
+ */
+public final class TracedProxy {
+
+    private TracedProxy() {
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <T> T wrap(Class<T> type, T target, Tracer tracer, CurrentTraceContext currentTraceContext) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+            String spanName = type.getSimpleName() + "." + method.getName();
+            if (method.getReturnType() == Mono.class) {
+                return ReactorSleuth.tracedMono(tracer, currentTraceContext, spanName,
+                        () -> Mono.defer(() -> (Mono<Object>) invoke(method, target, args)));
+            }
+            if (method.getReturnType() == Flux.class) {
+                return ReactorSleuth.tracedFlux(tracer, currentTraceContext, spanName,
+                        () -> Flux.defer(() -> (Flux<Object>) invoke(method, target, args)));
+            }
+            return invoke(method, target, args);
+        });
+    }
+
+    private static Object invoke(Method method, Object target, Object[] args) {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException ex) {
+            if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+            if (ex.getCause() instanceof Error) {
+                throw (Error) ex.getCause();
+            }
+            throw new UndeclaredThrowableException(ex.getCause());
+        } catch (IllegalAccessException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+}